@@ -0,0 +1,45 @@
+package logger.benchmarks;
+
+import logger.pojo.Log;
+import logger.utils.DeepCopyUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the serialization round trip Logger.appendLog pays to copy its buffer.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class DeepCopyBenchmark {
+
+    @Param({"1", "100", "1000"})
+    int batchSize;
+
+    Set<Log> batch;
+
+    @Setup
+    public void setUp() {
+        batch = Fixtures.batch(batchSize);
+    }
+
+    @Benchmark
+    public Set<Log> deepCopy() {
+        return DeepCopyUtil.deepCopy(batch);
+    }
+}
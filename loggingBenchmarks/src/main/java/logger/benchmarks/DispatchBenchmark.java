@@ -0,0 +1,99 @@
+package logger.benchmarks;
+
+import logger.data.Datastore;
+import logger.enums.DispatchMode;
+import logger.pojo.Log;
+import logger.service.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Time to deliver a burst of batches in each dispatch mode, against a datastore whose
+ * writes take 20 microseconds per log. ORDERED without an ordering key sends one batch
+ * at a time; keyed by tenant, each tenant's logs go out in parallel with the others.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DispatchBenchmark {
+
+    private static final int BATCHES = 8;
+    private static final int BATCH_SIZE = 64;
+    private static final int TENANTS = 8;
+    private static final long NANOS_PER_LOG = 20_000;
+
+    /**
+     * Blocks for as long as a write of that many logs would take.
+     */
+    static final class SlowDatastore implements Datastore {
+        @Override
+        public void addLog(Log log) {
+        }
+
+        @Override
+        public void appendLog(Collection<Log> logCollection) {
+            LockSupport.parkNanos(NANOS_PER_LOG * logCollection.size());
+        }
+
+        @Override
+        public void deleteLog() {
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class DispatchState {
+        @Param({"POOLED", "ORDERED", "ORDERED_BY_TENANT"})
+        String mode;
+
+        Logger logger;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Logger.resetInstance();
+            DispatchMode dispatchMode = mode.equals("POOLED") ? DispatchMode.POOLED : DispatchMode.ORDERED;
+            logger = Logger.getInstance(Fixtures.USER_ID, Fixtures.PROJECT, new SlowDatastore(), dispatchMode);
+            logger.setInFlightLimits(Integer.MAX_VALUE, Long.MAX_VALUE);
+            if (mode.equals("ORDERED_BY_TENANT")) {
+                logger.setOrderingKey(log -> log.getMdc().get("tenant"));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            Logger.resetInstance();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void deliverBurst(DispatchState state) {
+        CompletableFuture<?>[] shipped = new CompletableFuture<?>[BATCHES];
+        for (int batch = 0; batch < BATCHES; batch++) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Log log = new Log(Fixtures.message(i), Fixtures.severity(i));
+                log.setMdc(Map.of("tenant", "tenant-" + i % TENANTS));
+                state.logger.addLog(log);
+            }
+            shipped[batch] = state.logger.appendLog();
+        }
+        CompletableFuture.allOf(shipped).join();
+    }
+}
@@ -0,0 +1,90 @@
+package logger.benchmarks;
+
+import logger.data.Datastore;
+import logger.enums.Severity;
+import logger.pojo.Log;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Sample data and stub datastores shared by the benchmarks.
+ */
+final class Fixtures {
+
+    static final String USER_ID = "bench-user";
+    static final String PROJECT = "bench-project";
+
+    private static final String[] MESSAGES = {
+            "Payment gateway initialized successfully.",
+            "Warning: High latency detected in DB connection pool.",
+            "CRITICAL: Connection Timeout. Failed to write transaction to table 'orders'.",
+            "User 'admin' logged in successfully",
+            "Cache eviction policy is not optimal",
+            "Null pointer exception at user processing service",
+            "Retrying request to inventory service, attempt 3 of 5",
+            "Health check passed for node eu-west-1a"
+    };
+
+    private static final Severity[] SEVERITIES = {
+            Severity.LOW, Severity.MEDIUM, Severity.CRITICAL, Severity.LOW,
+            Severity.WARN, Severity.HIGH, Severity.MEDIUM, Severity.LOW
+    };
+
+    private Fixtures() {
+    }
+
+    static String message(int i) {
+        return MESSAGES[i % MESSAGES.length] + " #" + i;
+    }
+
+    static Severity severity(int i) {
+        return SEVERITIES[i % SEVERITIES.length];
+    }
+
+    /**
+     * A log filled in the way Logger.addLog would fill it, stack trace included.
+     */
+    static Log populatedLog(int i) {
+        Log log = new Log(message(i), severity(i));
+        log.setTimestamp(new Timestamp(System.currentTimeMillis()));
+        log.setThreadId(Long.toString(Thread.currentThread().getId()));
+        log.setThreadName(Thread.currentThread().getName());
+        log.setProject_name(PROJECT);
+        log.setUser_Id(USER_ID);
+
+        StringBuilder stackTrace = new StringBuilder();
+        for (StackTraceElement element : Thread.currentThread().getStackTrace()) {
+            stackTrace.append("\tat").append(element.toString()).append("\n");
+        }
+        log.setStackTrace(stackTrace.toString());
+        return log;
+    }
+
+    static Set<Log> batch(int size) {
+        Set<Log> logs = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            logs.add(populatedLog(i));
+        }
+        return logs;
+    }
+
+    /**
+     * Accepts every batch and does nothing, so only the client-side cost is measured.
+     */
+    static final class NoopDatastore implements Datastore {
+        @Override
+        public void addLog(Log log) {
+        }
+
+        @Override
+        public void appendLog(Collection<Log> logCollection) {
+        }
+
+        @Override
+        public void deleteLog() {
+        }
+    }
+}
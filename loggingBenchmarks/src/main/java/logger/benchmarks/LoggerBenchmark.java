@@ -0,0 +1,141 @@
+package logger.benchmarks;
+
+import logger.pojo.Log;
+import logger.service.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logger.addLog throughput under contention, and the cost of handing a batch off in appendLog.
+ * The datastore is a no-op, so only client-side work is measured.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LoggerBenchmark {
+
+    // addLog buffers forever until appendLog runs, so each thread flushes every this many records
+    private static final int FLUSH_EVERY = 1000;
+
+    private static final int HANDOFF_BATCH_SIZE = 100;
+
+    // Logger is a singleton; a new one per trial keeps buffers, metrics and in-flight state
+    // from one benchmark out of the next when several run in one fork
+    private static Logger freshLogger() {
+        Logger.resetInstance();
+        Logger logger = Logger.getInstance(Fixtures.USER_ID, Fixtures.PROJECT, new Fixtures.NoopDatastore());
+        logger.setInFlightLimits(Integer.MAX_VALUE, Long.MAX_VALUE);
+        return logger;
+    }
+
+    @State(Scope.Benchmark)
+    public static class LoggerState {
+        Logger logger;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            logger = freshLogger();
+        }
+
+        @TearDown(Level.Iteration)
+        public void flush() {
+            logger.appendLog().join();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            Logger.resetInstance();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        int counter;
+    }
+
+    private static void addOne(LoggerState state, ThreadState thread) {
+        state.logger.addLog(new Log(Fixtures.message(thread.counter), Fixtures.severity(thread.counter)));
+        if (++thread.counter % FLUSH_EVERY == 0) {
+            state.logger.appendLog();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(1)
+    public void addLog_01_threads(LoggerState state, ThreadState thread) {
+        addOne(state, thread);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(4)
+    public void addLog_04_threads(LoggerState state, ThreadState thread) {
+        addOne(state, thread);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(16)
+    public void addLog_16_threads(LoggerState state, ThreadState thread) {
+        addOne(state, thread);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(64)
+    public void addLog_64_threads(LoggerState state, ThreadState thread) {
+        addOne(state, thread);
+    }
+
+    @State(Scope.Thread)
+    public static class HandoffState {
+        Logger logger;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            logger = freshLogger();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            Logger.resetInstance();
+        }
+
+        // Refill the buffer so every appendLog call ships a full batch
+        @Setup(Level.Invocation)
+        public void fill() {
+            for (int i = 0; i < HANDOFF_BATCH_SIZE; i++) {
+                logger.addLog(new Log(Fixtures.message(i), Fixtures.severity(i)));
+            }
+        }
+    }
+
+    /**
+     * Time for appendLog to return its handle, not for the batch to be delivered.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public CompletableFuture<Void> appendLog_handoff(HandoffState state) {
+        return state.logger.appendLog();
+    }
+}
@@ -0,0 +1,88 @@
+package logger.benchmarks;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import logger.data.VectorStoreDatastore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import queryProcessor.RAGqueryProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RAGqueryProcessor.process latency (query embedding + similarity search) as the corpus grows.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class RagQueryBenchmark {
+
+    // Distinct messages actually run through the model, the corpus reuses them with noise
+    private static final int DISTINCT_MESSAGES = 256;
+
+    @Param({"100", "1000", "10000", "100000"})
+    int corpusSize;
+
+    VectorStoreDatastore datastore;
+
+    RAGqueryProcessor processor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        datastore = new VectorStoreDatastore();
+
+        List<Embedding> base = new ArrayList<>(DISTINCT_MESSAGES);
+        List<String> texts = new ArrayList<>(DISTINCT_MESSAGES);
+        for (int i = 0; i < DISTINCT_MESSAGES; i++) {
+            String text = "Severity: " + Fixtures.severity(i) + ". Message: " + Fixtures.message(i);
+            texts.add(text);
+            base.add(datastore.getEmbeddingModel().embed(text).content());
+        }
+
+        // Embedding 100k logs for real would dominate setup, so jitter the embedded ones instead
+        Random random = new Random(42);
+        List<Embedding> embeddings = new ArrayList<>(corpusSize);
+        List<TextSegment> segments = new ArrayList<>(corpusSize);
+        for (int i = 0; i < corpusSize; i++) {
+            float[] vector = base.get(i % DISTINCT_MESSAGES).vector().clone();
+            for (int d = 0; d < vector.length; d++) {
+                vector[d] += (float) (random.nextGaussian() * 0.01);
+            }
+            embeddings.add(Embedding.from(vector));
+            segments.add(TextSegment.from(texts.get(i % DISTINCT_MESSAGES),
+                    new Metadata().put("severity", Fixtures.severity(i).name())));
+        }
+        datastore.getEmbeddingStore().addAll(embeddings, segments);
+
+        processor = new RAGqueryProcessor(datastore);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        datastore.close();
+    }
+
+    @Benchmark
+    public List<EmbeddingMatch<TextSegment>> process() {
+        return processor.process("what went wrong with the database?");
+    }
+}
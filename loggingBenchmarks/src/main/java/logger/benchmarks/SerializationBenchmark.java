@@ -0,0 +1,65 @@
+package logger.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import logger.pojo.Log;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Gson encoding networkDataStore does per batch, against Jackson producing the same JSON.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"1", "100", "1000"})
+    int batchSize;
+
+    Set<Log> batch;
+
+    // Configured the same way as networkDataStore
+    Gson gson;
+
+    ObjectMapper jackson;
+
+    @Setup
+    public void setUp() {
+        batch = Fixtures.batch(batchSize);
+        gson = new GsonBuilder()
+                .setDateFormat("yyyy-MM-dd HH:mm:ss")
+                .create();
+        jackson = new ObjectMapper()
+                .setDateFormat(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
+    }
+
+    @Benchmark
+    public byte[] gson() {
+        return gson.toJson(batch).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] jackson() throws JsonProcessingException {
+        return jackson.writeValueAsBytes(batch);
+    }
+}
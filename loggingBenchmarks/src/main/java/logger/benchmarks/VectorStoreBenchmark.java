@@ -0,0 +1,78 @@
+package logger.benchmarks;
+
+import logger.data.VectorStoreDatastore;
+import logger.pojo.Log;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Embed-and-insert throughput of VectorStoreDatastore with the local MiniLM model.
+ * Scores are logs per second, whatever the batch size.
+ */
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class VectorStoreBenchmark {
+
+    private static final int BATCH_SIZE = 32;
+
+    @Param({"batch", "single"})
+    String mode;
+
+    VectorStoreDatastore datastore;
+
+    Set<Log> batch;
+
+    List<Log> singles;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        datastore = new VectorStoreDatastore();
+        batch = Fixtures.batch(BATCH_SIZE);
+        singles = List.copyOf(batch);
+    }
+
+    // The store only grows, start every iteration from the same size
+    @TearDown(Level.Iteration)
+    public void clear() {
+        datastore.getEmbeddingStore().removeAll();
+        datastore.deleteLog();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        datastore.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void embedAndInsert() throws TimeoutException {
+        if ("batch".equals(mode)) {
+            datastore.appendLog(batch);
+        } else {
+            for (Log log : singles) {
+                datastore.addLog(log);
+            }
+        }
+    }
+}
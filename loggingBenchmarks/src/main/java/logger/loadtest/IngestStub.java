@@ -0,0 +1,181 @@
+package logger.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import logger.metrics.Histogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-process stand-in for the Python server's POST /logs/ingest.
+ *
+ * Every request can be delayed, answered with a 500, or (during an outage window)
+ * dropped without a response so the client sees a closed connection. Records sent by
+ * {@link LoadTest} carry their send time as "sentAt:nanoTime" in the message, which the stub
+ * uses to measure end-to-end delivery latency; both run in the same JVM so the clocks agree.
+ */
+public class IngestStub {
+
+    private static final Pattern SENT_AT = Pattern.compile("sentAt:(\\d+)");
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+
+    private final long latencyMillis;
+    private final long latencyJitterMillis;
+    private final double errorRate;
+    private final long outageEveryMillis;
+    private final long outageForMillis;
+    private final long startedAtMillis = System.currentTimeMillis();
+
+    private final LongAdder receivedRecords = new LongAdder();
+    private final LongAdder acceptedRecords = new LongAdder();
+    private final AtomicLong requests = new AtomicLong();
+    private final Map<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+    private final LongAdder droppedConnections = new LongAdder();
+    private final Histogram deliveryLatencyMicros = new Histogram();
+
+    /**
+     * @param outageEveryMillis how often an outage starts, 0 for no outages.
+     * @param outageForMillis how long each outage lasts.
+     */
+    public IngestStub(int port, int handlerThreads, long latencyMillis, long latencyJitterMillis,
+                      double errorRate, long outageEveryMillis, long outageForMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.latencyJitterMillis = latencyJitterMillis;
+        this.errorRate = errorRate;
+        this.outageEveryMillis = outageEveryMillis;
+        this.outageForMillis = outageForMillis;
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.handlers = Executors.newFixedThreadPool(handlerThreads, r -> {
+            Thread thread = new Thread(r, "ingest-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext("/logs/ingest", this::handle);
+        server.setExecutor(handlers);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private boolean inOutage() {
+        if (outageEveryMillis <= 0) {
+            return false;
+        }
+        long elapsed = System.currentTimeMillis() - startedAtMillis;
+        return elapsed % outageEveryMillis >= outageEveryMillis - outageForMillis;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+
+            if (inOutage()) {
+                // No response at all, the client sees the connection close
+                droppedConnections.increment();
+                return;
+            }
+
+            long delay = latencyMillis;
+            if (latencyJitterMillis > 0) {
+                delay += ThreadLocalRandom.current().nextLong(latencyJitterMillis + 1);
+            }
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            long records = 0;
+            long now = System.nanoTime();
+            boolean fail = errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+            Matcher matcher = SENT_AT.matcher(new String(body, StandardCharsets.UTF_8));
+            while (matcher.find()) {
+                records++;
+                if (!fail) {
+                    deliveryLatencyMicros.record((now - Long.parseLong(matcher.group(1))) / 1_000);
+                }
+            }
+            receivedRecords.add(records);
+
+            int status = fail ? 500 : 200;
+            if (!fail) {
+                acceptedRecords.add(records);
+            }
+            statusCodes.computeIfAbsent(status, s -> new LongAdder()).increment();
+
+            byte[] response = (fail ? "{\"detail\":\"injected failure\"}" : "{\"status\":\"queued\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        }
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Records in every request that got an answer, accepted or not.
+     */
+    public long getReceivedRecords() {
+        return receivedRecords.sum();
+    }
+
+    /**
+     * Records in requests answered with 200.
+     */
+    public long getAcceptedRecords() {
+        return acceptedRecords.sum();
+    }
+
+    public long getDroppedConnections() {
+        return droppedConnections.sum();
+    }
+
+    public Map<Integer, Long> getStatusCodes() {
+        Map<Integer, Long> codes = new TreeMap<>();
+        statusCodes.forEach((status, count) -> codes.put(status, count.sum()));
+        return codes;
+    }
+
+    public Histogram getDeliveryLatencyMicros() {
+        return deliveryLatencyMicros;
+    }
+}
@@ -0,0 +1,307 @@
+package logger.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import logger.data.networkDataStore;
+import logger.enums.Severity;
+import logger.metrics.Histogram;
+import logger.metrics.MetricsSnapshot;
+import logger.pojo.Log;
+import logger.service.LogSampler;
+import logger.service.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives Logger from many threads at a fixed rate against an {@link IngestStub} and
+ * reports sustained throughput, addLog and delivery latency, drops and GC pressure.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar logger.loadtest.LoadTest --threads=16 --rate=50000 \
+ *      --duration=60 --mix=LOW=70,MEDIUM=20,WARN=8,HIGH=2 --latency=20 --errors=0.01
+ * </pre>
+ *
+ * Options (all optional, shown with their defaults):
+ * --threads=8 --rate=10000 (logs/s over all threads, 0 = as fast as possible)
+ * --duration=30 (seconds) --flush-interval=100 (ms between appendLog calls)
+ * --mix=LOW=60,MEDIUM=25,WARN=10,HIGH=4,CRITICAL=1 --message-bytes=120
+ * --latency=5 --jitter=5 (ms added by the stub) --errors=0 (fraction answered with 500)
+ * --outage-every=0 --outage-for=0 (ms, connections dropped during the window)
+ * --stub-threads=16 --drain=30 (seconds allowed for shutdown) --out=loadtest-result.json
+ * --sampling=off (or "on" for per call site limits and adaptive sampling; every generated
+ * log comes from one call site, so the limit caps the run at ~1000 logs/s)
+ *
+ * Logger is a singleton, so run one load test per JVM.
+ */
+public class LoadTest {
+
+    private final Map<String, String> options;
+
+    private final int threads;
+    private final long ratePerSecond;
+    private final long durationSeconds;
+    private final long flushIntervalMillis;
+    private final Severity[] mix;
+    private final String padding;
+
+    private final Histogram addLogNanos = new Histogram();
+    private final LongAdder sent = new LongAdder();
+    private final AtomicLong peakHeapUsed = new AtomicLong();
+    private volatile boolean running = true;
+
+    public LoadTest(Map<String, String> options) {
+        this.options = options;
+        this.threads = Integer.parseInt(option("threads", "8"));
+        this.ratePerSecond = Long.parseLong(option("rate", "10000"));
+        this.durationSeconds = Long.parseLong(option("duration", "30"));
+        this.flushIntervalMillis = Long.parseLong(option("flush-interval", "100"));
+        this.mix = parseMix(option("mix", "LOW=60,MEDIUM=25,WARN=10,HIGH=4,CRITICAL=1"));
+        this.padding = "x".repeat(Math.max(0, Integer.parseInt(option("message-bytes", "120")) - 40));
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    // "LOW=70,HIGH=30" becomes 100 slots, 70 of them LOW, so picking one is a single array read
+    static Severity[] parseMix(String spec) {
+        List<Severity> slots = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Bad severity mix entry: " + part);
+            }
+            Severity severity = Severity.valueOf(pair[0].trim().toUpperCase());
+            int weight = Integer.parseInt(pair[1].trim());
+            for (int i = 0; i < weight; i++) {
+                slots.add(severity);
+            }
+        }
+        if (slots.isEmpty()) {
+            throw new IllegalArgumentException("Severity mix is empty: " + spec);
+        }
+        return slots.toArray(new Severity[0]);
+    }
+
+    public Map<String, Object> run() throws IOException, InterruptedException {
+        IngestStub stub = new IngestStub(0,
+                Integer.parseInt(option("stub-threads", "16")),
+                Long.parseLong(option("latency", "5")),
+                Long.parseLong(option("jitter", "5")),
+                Double.parseDouble(option("errors", "0")),
+                Long.parseLong(option("outage-every", "0")),
+                Long.parseLong(option("outage-for", "0")));
+        stub.start();
+
+        networkDataStore store = new networkDataStore(stub.getUrl());
+        Logger logger = Logger.getInstance("loadtest-user", "loadtest", store);
+        if ("on".equals(option("sampling", "off"))) {
+            logger.setSampler(new LogSampler()
+                    .limitCallSites(1000, 2000)
+                    .adaptiveSampling(100_000, 0.5, 0.01));
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        Map<String, long[]> gcBefore = gcCounters();
+
+        List<Thread> generators = new ArrayList<>();
+        // Each generator reads its own counter before its first log and after its last,
+        // a thread that isn't running yet or has finished reports nothing
+        long[] allocatedBefore = new long[threads];
+        long[] allocatedAfter = new long[threads];
+        for (int i = 0; i < threads; i++) {
+            int index = i;
+            Thread generator = new Thread(() -> {
+                allocatedBefore[index] = allocatedBytes();
+                generate(logger, index);
+                allocatedAfter[index] = allocatedBytes();
+            }, "loadtest-generator-" + i);
+            generators.add(generator);
+        }
+
+        Thread flusher = new Thread(() -> {
+            while (running) {
+                logger.appendLog();
+                LockSupport.parkNanos(flushIntervalMillis * 1_000_000L);
+            }
+        }, "loadtest-flusher");
+        flusher.setDaemon(true);
+
+        System.out.printf("Load test: %d threads, %s logs/s, %ds, stub at %s%n", threads,
+                ratePerSecond == 0 ? "unbounded" : Long.toString(ratePerSecond), durationSeconds, stub.getUrl());
+
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            generators.get(i).start();
+        }
+        flusher.start();
+
+        long deadline = startNanos + durationSeconds * 1_000_000_000L;
+        long lastSent = 0;
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(1000);
+            peakHeapUsed.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+            long total = sent.sum();
+            System.out.printf("  %6d logs/s sent, %6d pending, %3d batches in flight, %3d/%3d requests, %8d delivered%n",
+                    total - lastSent, logger.getPendingRecords(), logger.getInFlightBatches(),
+                    store.getInFlightRequests(), store.getConcurrencyLimit(), stub.getAcceptedRecords());
+            lastSent = total;
+        }
+
+        running = false;
+        for (Thread generator : generators) {
+            generator.join();
+        }
+        // join makes the generators' writes visible here
+        long allocated = 0;
+        for (int i = 0; i < threads; i++) {
+            allocated += allocatedAfter[i] - allocatedBefore[i];
+        }
+        long generateNanos = System.nanoTime() - startNanos;
+        flusher.join();
+
+        logger.appendLog();
+        logger.shutdown(Duration.ofSeconds(Long.parseLong(option("drain", "30"))));
+        long totalNanos = System.nanoTime() - startNanos;
+        MetricsSnapshot snapshot = logger.getMetricsSnapshot();
+        stub.stop();
+
+        Map<String, Object> report = report(stub, snapshot, gcBefore, allocated, generateNanos, totalNanos);
+        Map<String, Object> sender = new LinkedHashMap<>();
+        sender.put("requests", stub.getRequests());
+        sender.put("coalescedBatches", store.getCoalescedBatches());
+        sender.put("finalConcurrencyLimit", store.getConcurrencyLimit());
+        report.put("sender", sender);
+        return report;
+    }
+
+    private void generate(Logger logger, int index) {
+        long intervalNanos = ratePerSecond == 0 ? 0 : threads * 1_000_000_000L / ratePerSecond;
+        long next = System.nanoTime();
+        long seq = 0;
+        String prefix = "load " + index + "-";
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        while (running) {
+            if (intervalNanos > 0) {
+                // Open loop: a stall is made up for by sending the backlog, not by skipping it
+                next += intervalNanos;
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+
+            long sentAt = System.nanoTime();
+            Log log = new Log(prefix + seq++ + " " + padding + " sentAt:" + sentAt, mix[random.nextInt(mix.length)]);
+            logger.addLog(log);
+            addLogNanos.record(System.nanoTime() - sentAt);
+            sent.increment();
+        }
+    }
+
+    // Bytes the calling thread allocated so far
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean).getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    // Collector name to {collections, milliseconds}
+    private static Map<String, long[]> gcCounters() {
+        Map<String, long[]> counters = new HashMap<>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            counters.put(gc.getName(), new long[]{gc.getCollectionCount(), gc.getCollectionTime()});
+        }
+        return counters;
+    }
+
+    private Map<String, Object> report(IngestStub stub, MetricsSnapshot snapshot, Map<String, long[]> gcBefore,
+                                       long allocated, long generateNanos, long totalNanos) {
+        long sentTotal = sent.sum();
+        long accepted = snapshot.getAcceptedBySeverity().values().stream().mapToLong(Long::longValue).sum();
+        long delivered = stub.getAcceptedRecords();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", options);
+
+        Map<String, Object> throughput = new LinkedHashMap<>();
+        throughput.put("sent", sentTotal);
+        throughput.put("sentPerSecond", sentTotal * 1_000_000_000L / Math.max(1, generateNanos));
+        throughput.put("delivered", delivered);
+        throughput.put("deliveredPerSecond", delivered * 1_000_000_000L / Math.max(1, totalNanos));
+        report.put("throughput", throughput);
+
+        report.put("addLogNanos", addLogNanos.snapshot());
+        report.put("deliveryLatencyMicros", stub.getDeliveryLatencyMicros().snapshot());
+        report.put("flushLatencyMicros", snapshot.getFlushLatencyMicros());
+
+        Map<String, Object> drops = new LinkedHashMap<>();
+        drops.put("notBuffered", sentTotal - accepted); // below threshold or sampled out
+        drops.put("droppedBySeverity", snapshot.getDroppedBySeverity());
+        drops.put("deferredFlushes", snapshot.getDeferredFlushes());
+        drops.put("failedBatches", snapshot.getFailedBatches());
+        drops.put("acceptedButNotDelivered", Math.max(0, accepted - delivered));
+        drops.put("stubStatusCodes", stub.getStatusCodes());
+        drops.put("stubDroppedConnections", stub.getDroppedConnections());
+        report.put("drops", drops);
+
+        Map<String, Object> gc = new LinkedHashMap<>();
+        gc.put("allocatedBytesPerLog", sentTotal == 0 ? 0 : allocated / sentTotal);
+        gc.put("generatorAllocatedBytes", allocated);
+        gc.put("peakHeapUsedBytes", peakHeapUsed.get());
+        Map<String, Object> collectors = new LinkedHashMap<>();
+        gcCounters().forEach((name, after) -> {
+            long[] before = gcBefore.getOrDefault(name, new long[2]);
+            collectors.put(name, Map.of("collections", after[0] - before[0], "millis", after[1] - before[1]));
+        });
+        gc.put("collectors", collectors);
+        report.put("gc", gc);
+        return report;
+    }
+
+    // --name=value pairs, "--name" alone means true
+    static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        Map<String, Object> report = new LoadTest(options).run();
+
+        ObjectMapper mapper = new ObjectMapper();
+        String json = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(report);
+        System.out.println(json);
+
+        File out = new File(options.getOrDefault("out", "loadtest-result.json"));
+        mapper.writerWithDefaultPrettyPrinter().writeValue(out, report);
+        System.out.println("Report written to " + out.getAbsolutePath());
+    }
+}
@@ -0,0 +1,475 @@
+package logger.data;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * An in-memory embedding store that supports deletion through tombstones.
+ *
+ * Deleting an entry only marks it as dead; searches skip dead entries until
+ * {@link #compact()} rebuilds the underlying index without them and swaps it in.
+ * Searches never take a lock, they always read whatever index is current.
+ */
+public class CompactingEmbeddingStore implements EmbeddingStore<TextSegment> {
+
+    /**
+     * Everything we need to rebuild the index, plus the fields deletions filter on.
+     */
+    public static final class StoredEntry {
+        private final String id;
+        private final Embedding embedding;
+        private final TextSegment segment;
+        private final long timestampMillis;
+
+        StoredEntry(String id, Embedding embedding, TextSegment segment, long timestampMillis) {
+            this.id = id;
+            this.embedding = embedding;
+            this.segment = segment;
+            this.timestampMillis = timestampMillis;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public TextSegment getSegment() {
+            return segment;
+        }
+
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+    }
+
+    // Upper bound on how many extra matches a search pulls to make up for tombstoned hits
+    private static final int MAX_OVERFETCH = 1024;
+
+    /**
+     * An index together with the ids deleted since it was built.
+     * Kept as one reference so a search never pairs an index with the wrong tombstones.
+     */
+    private static final class Generation {
+        // Swapped for a bigger copy by bulk adds, searches read it once
+        private volatile InMemoryEmbeddingStore<TextSegment> index;
+        private final Set<String> tombstones = ConcurrentHashMap.newKeySet();
+
+        private Generation(InMemoryEmbeddingStore<TextSegment> index) {
+            this.index = index;
+        }
+    }
+
+    private final Map<String, StoredEntry> liveEntries = new ConcurrentHashMap<>();
+
+    // Readers only ever dereference this once per search, the compactor swaps it
+    private volatile Generation current = new Generation(new InMemoryEmbeddingStore<>());
+
+    // Serializes writers with the compactor, searches never touch it
+    private final Object mutationLock = new Object();
+    // One compaction at a time; it only takes mutationLock to swap the index in
+    private final Object compactionLock = new Object();
+
+    // What was added and removed while a compaction rebuilds the index, guarded by mutationLock
+    private List<StoredEntry> addedDuringCompaction = null;
+    private Set<String> removedDuringCompaction = null;
+
+    // Ids added since the last snapshot or change set was written, and whether anything was
+    // removed since the last snapshot; guarded by mutationLock. Only kept once a snapshot was
+    // written or read, a store nobody persists doesn't pay for it.
+    private Set<String> addedSinceSnapshot = null;
+    private boolean removedSinceSnapshot = false;
+
+    @Override
+    public String add(Embedding embedding) {
+        return add(embedding, null);
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        put(id, embedding, null, System.currentTimeMillis());
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment segment) {
+        String id = UUID.randomUUID().toString();
+        put(id, embedding, segment, System.currentTimeMillis());
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return addAll(embeddings, Collections.nCopies(embeddings.size(), null));
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> segments) {
+        long now = System.currentTimeMillis();
+        List<Long> timestamps = new ArrayList<>(embeddings.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            timestamps.add(now);
+        }
+        return addAll(embeddings, segments, timestamps);
+    }
+
+    /**
+     * Adds a batch of embeddings, recording the time each one should be aged from.
+     */
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> segments, List<Long> timestampsMillis) {
+        if (embeddings.size() != segments.size() || embeddings.size() != timestampsMillis.size()) {
+            throw new IllegalArgumentException("embeddings, segments and timestamps must be the same size");
+        }
+
+        List<String> ids = new ArrayList<>(embeddings.size());
+        List<StoredEntry> entries = new ArrayList<>(embeddings.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            String id = UUID.randomUUID().toString();
+            entries.add(new StoredEntry(id, embeddings.get(i), segments.get(i), timestampsMillis.get(i)));
+            ids.add(id);
+        }
+        synchronized (mutationLock) {
+            for (StoredEntry entry : entries) {
+                track(entry);
+            }
+            Generation generation = current;
+            generation.index = withEntries(generation.index, entries);
+        }
+        return ids;
+    }
+
+    private void put(String id, Embedding embedding, TextSegment segment, long timestampMillis) {
+        synchronized (mutationLock) {
+            track(new StoredEntry(id, embedding, segment, timestampMillis));
+            current.index.add(id, embedding, segment);
+        }
+    }
+
+    // Everything an add records besides the index; the caller holds mutationLock
+    private void track(StoredEntry entry) {
+        liveEntries.put(entry.getId(), entry);
+        if (addedSinceSnapshot != null) {
+            addedSinceSnapshot.add(entry.getId());
+        }
+        if (addedDuringCompaction != null) {
+            addedDuringCompaction.add(entry);
+        }
+    }
+
+    // The caller holds mutationLock and has taken the entry out of liveEntries
+    private void untrack(String id) {
+        current.tombstones.add(id);
+        removedSinceSnapshot = true;
+        if (removedDuringCompaction != null) {
+            removedDuringCompaction.add(id);
+        }
+    }
+
+    /**
+     * InMemoryEmbeddingStore only takes our ids one entry at a time, and every add copies its
+     * whole array. Merging one-entry stores into it copies the array once for the lot.
+     */
+    private static InMemoryEmbeddingStore<TextSegment> withEntries(InMemoryEmbeddingStore<TextSegment> index,
+                                                                   Collection<StoredEntry> entries) {
+        if (entries.isEmpty()) {
+            return index;
+        }
+        List<InMemoryEmbeddingStore<TextSegment>> parts = new ArrayList<>(entries.size() + 1);
+        parts.add(index);
+        for (StoredEntry entry : entries) {
+            InMemoryEmbeddingStore<TextSegment> part = new InMemoryEmbeddingStore<>();
+            part.add(entry.getId(), entry.embedding, entry.segment);
+            parts.add(part);
+        }
+        return InMemoryEmbeddingStore.merge(parts);
+    }
+
+    @Override
+    public void remove(String id) {
+        removeAll(List.of(id));
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        synchronized (mutationLock) {
+            for (String id : ids) {
+                if (liveEntries.remove(id) != null) {
+                    untrack(id);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        removeIf(entry -> entry.getSegment() != null && filter.test(entry.getSegment().metadata()));
+    }
+
+    @Override
+    public void removeAll() {
+        removeIf(entry -> true);
+    }
+
+    /**
+     * Tombstones every live entry matching the predicate.
+     * @return the number of entries deleted.
+     */
+    public int removeIf(Predicate<StoredEntry> predicate) {
+        int removed = 0;
+        synchronized (mutationLock) {
+            for (StoredEntry entry : liveEntries.values()) {
+                if (predicate.test(entry)) {
+                    liveEntries.remove(entry.getId());
+                    untrack(entry.getId());
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        Generation generation = current;
+        InMemoryEmbeddingStore<TextSegment> index = generation.index;
+
+        // Over-fetch so that dead hits don't push live ones out of the result
+        int pending = generation.tombstones.size();
+        if (pending == 0) {
+            return index.search(request);
+        }
+
+        // Over-fetch a bounded amount first; if the page was full and tombstones still left
+        // it short, dead hits may be hiding live ones, so search again skipping all of them
+        int overfetch = Math.min(pending, MAX_OVERFETCH);
+        while (true) {
+            int fetch = request.maxResults() + overfetch;
+            EmbeddingSearchRequest widened = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(request.queryEmbedding())
+                    .maxResults(fetch)
+                    .minScore(request.minScore())
+                    .filter(request.filter())
+                    .build();
+
+            List<EmbeddingMatch<TextSegment>> found = index.search(widened).matches();
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(request.maxResults());
+            for (EmbeddingMatch<TextSegment> match : found) {
+                if (generation.tombstones.contains(match.embeddingId())) {
+                    continue;
+                }
+                matches.add(match);
+                if (matches.size() == request.maxResults()) {
+                    break;
+                }
+            }
+
+            if (matches.size() == request.maxResults() || found.size() < fetch || overfetch >= pending) {
+                return new EmbeddingSearchResult<>(matches);
+            }
+            overfetch = pending;
+        }
+    }
+
+    /**
+     * Rebuilds the index from the live entries and swaps it in.
+     * Concurrent searches keep using the old index until the swap. Writers only wait for the
+     * swap itself: the index is built from a copy of the live entries, and what was added or
+     * removed meanwhile is applied to it under the lock.
+     * @return the number of tombstones purged.
+     */
+    public int compact() {
+        synchronized (compactionLock) {
+            Generation old;
+            synchronized (mutationLock) {
+                old = current;
+                if (old.tombstones.isEmpty()) {
+                    return 0;
+                }
+                addedDuringCompaction = new ArrayList<>();
+                removedDuringCompaction = new HashSet<>();
+            }
+
+            // The copy may or may not have what changes while it is taken, both are sorted out below
+            List<StoredEntry> copy = new ArrayList<>(liveEntries.values());
+            Set<String> copied = new HashSet<>(copy.size() * 2);
+            for (StoredEntry entry : copy) {
+                copied.add(entry.getId());
+            }
+            InMemoryEmbeddingStore<TextSegment> rebuilt = withEntries(new InMemoryEmbeddingStore<>(), copy);
+
+            synchronized (mutationLock) {
+                List<StoredEntry> added = addedDuringCompaction;
+                Set<String> removed = removedDuringCompaction;
+                addedDuringCompaction = null;
+                removedDuringCompaction = null;
+                if (current != old) {
+                    // A snapshot was loaded meanwhile, what was rebuilt is stale
+                    return 0;
+                }
+
+                List<StoredEntry> missing = new ArrayList<>();
+                for (StoredEntry entry : added) {
+                    if (!copied.contains(entry.getId()) && liveEntries.get(entry.getId()) == entry) {
+                        missing.add(entry);
+                    }
+                }
+                Generation compacted = new Generation(withEntries(rebuilt, missing));
+                for (String id : removed) {
+                    if (copied.contains(id)) {
+                        compacted.tombstones.add(id);
+                    }
+                }
+
+                int purged = old.tombstones.size() - compacted.tombstones.size();
+                this.current = compacted;
+                return Math.max(purged, 0);
+            }
+        }
+    }
+
+    /**
+     * Writes every live entry, with its id and timestamp, so {@link #readSnapshot} can restore
+     * the store as it is now. Adds made while the snapshot is written are not in it.
+     * @return the number of entries written.
+     */
+    public int writeSnapshot(OutputStream out) throws IOException {
+        List<StoredEntry> entries;
+        synchronized (mutationLock) {
+            entries = new ArrayList<>(liveEntries.values());
+            addedSinceSnapshot = new HashSet<>();
+            removedSinceSnapshot = false;
+        }
+        return writeEntries(out, entries);
+    }
+
+    /**
+     * Writes the entries added since the last snapshot or change set, in the snapshot format,
+     * for {@link #readChanges} to apply on top of that snapshot. Removals can't be written
+     * this way: once anything was removed, or before any snapshot was written or read, it
+     * writes nothing and returns -1, and a full snapshot is needed instead.
+     * @return the number of entries written, or -1.
+     */
+    public int writeChanges(OutputStream out) throws IOException {
+        List<StoredEntry> entries = new ArrayList<>();
+        synchronized (mutationLock) {
+            if (addedSinceSnapshot == null || removedSinceSnapshot) {
+                return -1;
+            }
+            for (String id : addedSinceSnapshot) {
+                entries.add(liveEntries.get(id));
+            }
+            addedSinceSnapshot = new HashSet<>();
+        }
+        return writeEntries(out, entries);
+    }
+
+    private int writeEntries(OutputStream out, List<StoredEntry> entries) throws IOException {
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeInt(entries.size());
+        for (StoredEntry entry : entries) {
+            oos.writeUTF(entry.id);
+            oos.writeLong(entry.timestampMillis);
+            oos.writeObject(entry.embedding.vector());
+            oos.writeObject(entry.segment == null ? null : entry.segment.text());
+            oos.writeObject(entry.segment == null ? null : new HashMap<>(entry.segment.metadata().toMap()));
+            // Entries share nothing, don't keep them all in the stream's handle table
+            oos.reset();
+        }
+        oos.flush();
+        return entries.size();
+    }
+
+    /**
+     * Replaces everything in the store with the entries of a snapshot from {@link #writeSnapshot}.
+     * @return the number of entries read.
+     */
+    public int readSnapshot(InputStream in) throws IOException {
+        List<StoredEntry> entries = readEntries(in);
+        Generation loaded = new Generation(withEntries(new InMemoryEmbeddingStore<>(), entries));
+        synchronized (mutationLock) {
+            liveEntries.clear();
+            for (StoredEntry entry : entries) {
+                liveEntries.put(entry.getId(), entry);
+            }
+            this.current = loaded;
+            addedSinceSnapshot = new HashSet<>();
+            removedSinceSnapshot = false;
+        }
+        return entries.size();
+    }
+
+    /**
+     * Adds the entries of a change set from {@link #writeChanges}, replacing any with the same id.
+     * @return the number of entries read.
+     */
+    public int readChanges(InputStream in) throws IOException {
+        List<StoredEntry> entries = readEntries(in);
+        synchronized (mutationLock) {
+            List<String> replaced = new ArrayList<>();
+            for (StoredEntry entry : entries) {
+                if (liveEntries.put(entry.getId(), entry) != null) {
+                    replaced.add(entry.getId());
+                }
+                if (addedDuringCompaction != null) {
+                    addedDuringCompaction.add(entry);
+                }
+            }
+            Generation generation = current;
+            if (!replaced.isEmpty()) {
+                generation.index.removeAll(replaced);
+            }
+            generation.index = withEntries(generation.index, entries);
+        }
+        return entries.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<StoredEntry> readEntries(InputStream in) throws IOException {
+        ObjectInputStream ois = new ObjectInputStream(in);
+        int count = ois.readInt();
+        List<StoredEntry> entries = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                String id = ois.readUTF();
+                long timestampMillis = ois.readLong();
+                Embedding embedding = Embedding.from((float[]) ois.readObject());
+                String text = (String) ois.readObject();
+                Map<String, Object> metadata = (Map<String, Object>) ois.readObject();
+                TextSegment segment = text == null ? null : TextSegment.from(text, Metadata.from(metadata));
+                entries.add(new StoredEntry(id, embedding, segment, timestampMillis));
+            }
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Not an embedding store snapshot", e);
+        }
+        return entries;
+    }
+
+    public int size() {
+        return liveEntries.size();
+    }
+
+    public int tombstoneCount() {
+        return current.tombstones.size();
+    }
+}
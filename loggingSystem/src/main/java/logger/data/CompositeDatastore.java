@@ -0,0 +1,369 @@
+package logger.data;
+
+import logger.enums.FailurePolicy;
+import logger.enums.OverflowPolicy;
+import logger.metrics.DatastoreMetrics;
+import logger.pojo.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A Datastore that tees every batch to several sinks.
+ *
+ * Each sink has its own bounded queue and worker thread, so a slow sink
+ * (embedding, network) only ever backs up its own queue and never the
+ * caller or the other sinks.
+ */
+public class CompositeDatastore implements Datastore, AutoCloseable {
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final int MAX_RETRIES = 3;
+    private static final long RETRY_BACKOFF_MILLIS = 200;
+    private static final long POLL_INTERVAL_MILLIS = 100;
+    private static final long DEFAULT_CLOSE_TIMEOUT_SECONDS = 30;
+
+    private final List<Sink> sinks = new ArrayList<>();
+
+    // Told about every sink added, e.g. to register its metrics
+    private final List<Runnable> sinkListeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean closed = false;
+
+    // Hand-offs hold the read side, close takes the write side, so no batch is
+    // queued after close started and never written
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+
+    private final DatastoreMetrics metrics = new DatastoreMetrics("CompositeDatastore");
+
+    public CompositeDatastore addSink(Datastore datastore) {
+        return addSink(datastore, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.DROP_OLDEST, FailurePolicy.DROP);
+    }
+
+    public CompositeDatastore addSink(Datastore datastore, int queueCapacity,
+                                      OverflowPolicy overflowPolicy, FailurePolicy failurePolicy) {
+        Sink sink;
+        lifecycle.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("CompositeDatastore is closed");
+            }
+            synchronized (sinks) {
+                sink = new Sink(datastore, sinks.size(), queueCapacity, overflowPolicy, failurePolicy);
+                sinks.add(sink);
+            }
+            sink.worker.start();
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+        for (Runnable listener : sinkListeners) {
+            listener.run();
+        }
+        return this;
+    }
+
+    /**
+     * Runs the listener after every sink added from now on.
+     */
+    public void addSinkListener(Runnable listener) {
+        sinkListeners.add(listener);
+    }
+
+    public void removeSinkListener(Runnable listener) {
+        sinkListeners.remove(listener);
+    }
+
+    @Override
+    public void addLog(Log log) {
+        appendLog(List.of(log));
+    }
+
+    /**
+     * Hands the batch to every sink's queue and returns without waiting for any write.
+     * The batch is shared between sinks, so sinks must treat it as read-only.
+     */
+    @Override
+    public void appendLog(Collection<Log> logCollection) {
+        appendLogAsync(logCollection);
+    }
+
+    /**
+     * Same hand-off as {@link #appendLog(Collection)}; the future completes once every
+     * sink has written the batch, and fails if any sink dropped it or gave up on it.
+     */
+    @Override
+    public CompletableFuture<Void> appendLogAsync(Collection<Log> logCollection) {
+        if (logCollection == null || logCollection.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long startNanos = System.nanoTime();
+        Collection<Log> batch = Collections.unmodifiableList(new ArrayList<>(logCollection));
+        CompletableFuture<?>[] written;
+        lifecycle.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("CompositeDatastore is closed");
+            }
+            List<Sink> current = getSinks();
+            written = new CompletableFuture<?>[current.size()];
+            for (int i = 0; i < current.size(); i++) {
+                PendingBatch pending = new PendingBatch(batch);
+                current.get(i).offer(pending);
+                written[i] = pending.done;
+            }
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+        return CompletableFuture.allOf(written).whenComplete((ignored, error) -> {
+            if (error != null) {
+                metrics.recordFailure();
+            } else {
+                metrics.recordWrite(batch.size(), System.nanoTime() - startNanos);
+            }
+        });
+    }
+
+    /**
+     * A batch waiting in one sink's queue, with the future that sink completes.
+     */
+    private static final class PendingBatch {
+        private final Collection<Log> logs;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private PendingBatch(Collection<Log> logs) {
+            this.logs = logs;
+        }
+    }
+
+    @Override
+    public void deleteLog() {
+        for (Sink sink : getSinks()) {
+            sink.datastore.deleteLog();
+        }
+    }
+
+    /**
+     * Same as {@link #close(long, TimeUnit)} with a 30 second timeout.
+     */
+    @Override
+    public void close() {
+        try {
+            close(DEFAULT_CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops accepting batches and lets every sink drain what it already queued.
+     * Sinks still busy after the timeout are interrupted. Every sink that is
+     * {@link AutoCloseable} is closed afterwards.
+     */
+    public void close(long timeout, TimeUnit unit) throws InterruptedException {
+        lifecycle.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            lifecycle.writeLock().unlock();
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        for (Sink sink : getSinks()) {
+            long remaining = deadline - System.nanoTime();
+            sink.worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+            if (sink.worker.isAlive()) {
+                sink.worker.interrupt();
+                System.err.println("Sink " + sink.name + " did not drain before shutdown, "
+                        + sink.queue.size() + " batches lost");
+                PendingBatch lost;
+                while ((lost = sink.queue.poll()) != null) {
+                    lost.done.completeExceptionally(new TimeoutException("Shut down before batch was written"));
+                }
+            }
+            if (sink.datastore instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) sink.datastore).close();
+                } catch (Exception e) {
+                    System.err.println("Failed to close sink " + sink.name + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Batches count as written once every sink wrote them; each sink's own
+     * datastore reports its metrics separately.
+     */
+    @Override
+    public DatastoreMetrics getMetrics() {
+        return metrics;
+    }
+
+    public List<Sink> getSinks() {
+        synchronized (sinks) {
+            return new ArrayList<>(sinks);
+        }
+    }
+
+    /**
+     * One downstream datastore with its own queue, worker and policies.
+     */
+    public final class Sink {
+
+        private final Datastore datastore;
+        private final int index;
+        private final String name;
+        private final BlockingQueue<PendingBatch> queue;
+        private final OverflowPolicy overflowPolicy;
+        private final FailurePolicy failurePolicy;
+        private final Thread worker;
+
+        private final AtomicLong droppedBatches = new AtomicLong();
+        private final AtomicLong failedBatches = new AtomicLong();
+        private final AtomicLong writtenBatches = new AtomicLong();
+
+        private Sink(Datastore datastore, int index, int queueCapacity,
+                     OverflowPolicy overflowPolicy, FailurePolicy failurePolicy) {
+            this.datastore = datastore;
+            this.index = index;
+            // Suffixed with the index, a composite may hold several stores of one class
+            this.name = datastore.getClass().getSimpleName() + "-" + index;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.overflowPolicy = overflowPolicy;
+            this.failurePolicy = failurePolicy;
+            this.worker = new Thread(this::drain, "plogger-sink-" + name);
+            this.worker.setDaemon(true);
+        }
+
+        private void offer(PendingBatch batch) {
+            switch (overflowPolicy) {
+                case BLOCK:
+                    try {
+                        queue.put(batch);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        drop(batch);
+                    }
+                    break;
+                case DROP_OLDEST:
+                    while (!queue.offer(batch)) {
+                        PendingBatch oldest = queue.poll();
+                        if (oldest != null) {
+                            drop(oldest);
+                        }
+                    }
+                    break;
+                case DROP_NEWEST:
+                default:
+                    if (!queue.offer(batch)) {
+                        drop(batch);
+                    }
+                    break;
+            }
+        }
+
+        private void drop(PendingBatch batch) {
+            droppedBatches.incrementAndGet();
+            batch.done.completeExceptionally(
+                    new RejectedExecutionException("Sink " + name + " queue is full, batch dropped"));
+        }
+
+        private void drain() {
+            while (true) {
+                PendingBatch batch;
+                try {
+                    batch = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (batch == null) {
+                    if (closed) {
+                        // Nothing is offered once closed is set, but a batch may have
+                        // arrived between the poll and reading the flag
+                        while ((batch = queue.poll()) != null) {
+                            write(batch);
+                        }
+                        return; // closed and fully drained
+                    }
+                    continue;
+                }
+                write(batch);
+            }
+        }
+
+        private void write(PendingBatch batch) {
+            int attempts = failurePolicy == FailurePolicy.RETRY ? MAX_RETRIES : 1;
+            for (int attempt = 1; attempt <= attempts; attempt++) {
+                try {
+                    datastore.appendLog(batch.logs);
+                    writtenBatches.incrementAndGet();
+                    batch.done.complete(null);
+                    return;
+                } catch (TimeoutException | RuntimeException e) {
+                    if (attempt == attempts) {
+                        failedBatches.incrementAndGet();
+                        System.err.println("Sink " + name + " failed to write batch of "
+                                + batch.logs.size() + " logs: " + e.getMessage());
+                        batch.done.completeExceptionally(e);
+                        return;
+                    }
+                    try {
+                        Thread.sleep(RETRY_BACKOFF_MILLIS * attempt);
+                    } catch (InterruptedException ie) {
+                        // Only the shutdown path interrupts us, give up on this batch
+                        failedBatches.incrementAndGet();
+                        batch.done.completeExceptionally(ie);
+                        return;
+                    }
+                }
+            }
+        }
+
+        public Datastore getDatastore() {
+            return datastore;
+        }
+
+        /**
+         * Position among this composite's sinks, in the order they were added.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getQueueDepth() {
+            return queue.size();
+        }
+
+        public long getDroppedBatches() {
+            return droppedBatches.get();
+        }
+
+        public long getFailedBatches() {
+            return failedBatches.get();
+        }
+
+        public long getWrittenBatches() {
+            return writtenBatches.get();
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package logger.data;
 
+import logger.metrics.DatastoreMetrics;
 import logger.pojo.Log;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
 
 public interface Datastore {
@@ -12,8 +14,30 @@ public interface Datastore {
 
     void appendLog(Collection<Log> logCollection) throws TimeoutException;
 
+    /**
+     * Appends a batch and returns a future that completes once the batch is stored,
+     * or completes exceptionally if it could not be.
+     * The default runs {@link #appendLog(Collection)} on the calling thread; stores
+     * that can do real non-blocking I/O should override it.
+     */
+    default CompletableFuture<Void> appendLogAsync(Collection<Log> logCollection) {
+        try {
+            appendLog(logCollection);
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     void deleteLog();
 
+    /**
+     * Counters and histograms this store records, or null if it records none.
+     */
+    default DatastoreMetrics getMetrics() {
+        return null;
+    }
+
 
 
 }
@@ -1,5 +1,6 @@
 package logger.data;
 
+import logger.metrics.DatastoreMetrics;
 import logger.pojo.Log;
 
 import java.io.*;
@@ -8,17 +9,26 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.concurrent.TimeoutException;
 
-public class FileStore implements Datastore{
+public class FileStore implements Datastore, Closeable {
 
 
     private long timestamp;
     private File file;
     private FileOutputStream fos;
     private ObjectOutputStream oos;
+    private final DatastoreMetrics metrics = new DatastoreMetrics("FileStore");
+
+    // Every FileStore writes its own segment, <epoch seconds>.log, in here
+    public static final String DEFAULT_DIRECTORY = "./logs/";
 
     public FileStore() {
+        this(new File(DEFAULT_DIRECTORY));
+    }
+
+    public FileStore(File directory) {
         this.timestamp = java.time.Instant.now().getEpochSecond();
-        this.file = new File("./logs/" + this.timestamp + ".log");
+        directory.mkdirs();
+        this.file = new File(directory, this.timestamp + ".log");
         try {
             this.fos = new FileOutputStream(file, true);
             this.oos = new ObjectOutputStream(this.fos);
@@ -37,15 +47,22 @@ public class FileStore implements Datastore{
 
         // here is where io will happen
 
+            long startNanos = System.nanoTime();
             try {
+                // Start every batch with a reset so readers don't have to hold on to
+                // everything before it, and flush so a tailing reader sees whole batches
+                this.oos.reset();
                 for(Log log: logCollection) {
                     System.out.println(log.toString());
                     this.oos.writeObject(log);
                 }
+                this.oos.flush();
 
             } catch (Exception e) {
+                metrics.recordFailure();
                 throw new RuntimeException(e);
             }
+            metrics.recordWrite(logCollection.size(), System.nanoTime() - startNanos);
 
 
     }
@@ -105,6 +122,20 @@ public class FileStore implements Datastore{
 
     }
 
+    @Override
+    public DatastoreMetrics getMetrics() {
+        return metrics;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileClose();
+    }
+
     public void fileClose() throws IOException { // I KNOW THIS IS NOT CLOSED
         this.oos.flush();
         this.oos.close();
@@ -0,0 +1,577 @@
+package logger.data;
+
+import logger.metrics.DatastoreMetrics;
+import logger.pojo.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds a {@link VectorStoreDatastore} from the segments a {@link FileStore} writes, so the
+ * index can be built off the logging path and rebuilt without replaying everything.
+ *
+ * Each pass reads the records added to every segment since the last pass, embeds them in
+ * batches and then commits: the logs embedded since the last commit are written to a
+ * delta-G-N.bin next to the last whole index-G.bin, and a checkpoint naming the index, its
+ * deltas and how many records of each segment they hold replaces the old one with an atomic
+ * rename. The index and its offsets always change together, so after a crash the indexer
+ * loads the last committed index and deltas and carries on from its offsets; records
+ * embedded after that commit are embedded once more, nothing is lost or indexed twice.
+ *
+ * A delta costs what the pass added, not the size of the index. The whole index is written
+ * again, and the old index and deltas deleted, after {@value #MAX_DELTAS} deltas, once the
+ * deltas add up to more bytes than the index, and whenever logs were deleted from the vector
+ * store since the last commit, deletions can't be written as a delta. Those commits cost
+ * O(index), so a store with a TTL pays it on every pass its maintenance expires something.
+ *
+ * Offsets count records, Java serialization streams can't be entered at a byte offset.
+ * Resuming a segment reads past the records already indexed, but doesn't embed them. The
+ * FileStore starts every batch with a stream reset though, so a reader that runs into a
+ * batch still being written goes back to the start of that batch, not of the segment.
+ * Records that can't be read as a Log, say of a class that isn't on the classpath, are
+ * skipped and counted in {@link #getSkippedRecords}.
+ */
+public class LogTailIndexer {
+
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final int MAX_DELTAS = 32;
+
+    private static final String CHECKPOINT_FILE = "checkpoint.properties";
+    private static final String SEGMENT_KEY = "segment.";
+
+    private final File logDirectory;
+    private final File stateDirectory;
+    private final VectorStoreDatastore vectorStore;
+    private final int batchSize;
+    private final DatastoreMetrics metrics = new DatastoreMetrics("LogTailIndexer");
+
+    // Everything below is guarded by this
+    private final Map<String, Long> offsets = new TreeMap<>();
+    private final Map<String, SegmentReader> readers = new HashMap<>();
+    // Length of segments read to the end whose reader was closed, to skip them until they grow
+    private final Map<String, Long> idleLengths = new HashMap<>();
+    private long generation = 0;
+    // Deltas committed on top of index-<generation>.bin, oldest first
+    private final List<String> deltas = new ArrayList<>();
+    private long indexBytes = 0;
+    private long deltaBytes = 0;
+    // Set when a delta couldn't be written, the next commit writes the whole index
+    private boolean wholeIndexDue = false;
+    private long indexedRecords = 0;
+    private long restoredRecords = 0;
+    private long skippedRecords = 0;
+    // Embedded but not committed yet
+    private int uncommitted = 0;
+    // Whether the offsets moved since the last commit, skipped records move them too
+    private boolean offsetsMoved = false;
+
+    private ScheduledExecutorService tailer;
+
+    public LogTailIndexer(File logDirectory, VectorStoreDatastore vectorStore, File stateDirectory) {
+        this(logDirectory, vectorStore, stateDirectory, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Loads the last committed index into the vector store, if the state directory has one.
+     * @param stateDirectory where the index snapshots and the checkpoint are kept.
+     * @param batchSize how many records are embedded at a time.
+     */
+    public LogTailIndexer(File logDirectory, VectorStoreDatastore vectorStore, File stateDirectory, int batchSize) {
+        this.logDirectory = logDirectory;
+        this.vectorStore = vectorStore;
+        this.stateDirectory = stateDirectory;
+        this.batchSize = Math.max(1, batchSize);
+
+        stateDirectory.mkdirs();
+        restore();
+    }
+
+    private void restore() {
+        File checkpointFile = new File(stateDirectory, CHECKPOINT_FILE);
+        if (!checkpointFile.exists()) {
+            return;
+        }
+
+        Properties checkpoint = new Properties();
+        try (InputStream in = new FileInputStream(checkpointFile)) {
+            checkpoint.load(in);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read index checkpoint " + checkpointFile, e);
+        }
+
+        generation = Long.parseLong(checkpoint.getProperty("generation"));
+        File index = new File(stateDirectory, checkpoint.getProperty("index"));
+        try (InputStream in = new BufferedInputStream(new FileInputStream(index))) {
+            restoredRecords = vectorStore.loadIndex(in);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not load index " + index, e);
+        }
+        indexBytes = index.length();
+
+        for (String name : checkpoint.getProperty("deltas", "").split(",")) {
+            if (name.isEmpty()) {
+                continue;
+            }
+            File delta = new File(stateDirectory, name);
+            try (InputStream in = new BufferedInputStream(new FileInputStream(delta))) {
+                restoredRecords += vectorStore.loadIndexChanges(in);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not load index delta " + delta, e);
+            }
+            deltas.add(name);
+            deltaBytes += delta.length();
+        }
+
+        for (String key : checkpoint.stringPropertyNames()) {
+            if (key.startsWith(SEGMENT_KEY)) {
+                offsets.put(key.substring(SEGMENT_KEY.length()), Long.parseLong(checkpoint.getProperty(key)));
+            }
+        }
+    }
+
+    /**
+     * Runs {@link #indexNewRecords} every interval on a background thread.
+     */
+    public synchronized void start(Duration interval) {
+        if (tailer != null) {
+            return;
+        }
+        tailer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "log-tail-indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = interval.toMillis();
+        tailer.scheduleWithFixedDelay(this::poll, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+        try {
+            indexNewRecords();
+        } catch (Exception e) {
+            // Never let one bad pass kill the scheduled task, the next one retries from the checkpoint
+            System.err.println("Log indexing failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Embeds every record written since the last pass and commits the index with the new offsets.
+     * @return the number of records indexed.
+     */
+    public synchronized int indexNewRecords() {
+        List<File> segments = segments();
+        try {
+            for (int i = 0; i < segments.size(); i++) {
+                // Older segments are usually finished, the newest one is kept open between passes
+                indexSegment(segments.get(i), i == segments.size() - 1);
+            }
+        } finally {
+            forgetDeletedSegments(segments);
+        }
+        // After a failure, what was embedded before it is committed by the next pass
+        int indexed = uncommitted;
+        if (offsetsMoved) {
+            commit();
+            uncommitted = 0;
+            offsetsMoved = false;
+            indexedRecords += indexed;
+        }
+        return indexed;
+    }
+
+    // The FileStore's <epoch seconds>.log files, oldest first
+    private List<File> segments() {
+        File[] files = logDirectory.listFiles((dir, name) -> name.matches("\\d+\\.log"));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        List<File> segments = new ArrayList<>(Arrays.asList(files));
+        segments.sort(Comparator.comparingLong(file -> Long.parseLong(file.getName().replace(".log", ""))));
+        return segments;
+    }
+
+    private void indexSegment(File segment, boolean newest) {
+        String name = segment.getName();
+        SegmentReader reader = readers.get(name);
+        if (reader == null) {
+            Long idleLength = idleLengths.get(name);
+            if (idleLength != null && idleLength == segment.length()) {
+                return;
+            }
+            try {
+                reader = new SegmentReader(segment);
+            } catch (IOException e) {
+                // The stream header isn't written yet
+                return;
+            }
+            readers.put(name, reader);
+            idleLengths.remove(name);
+        }
+
+        long offset = offsets.getOrDefault(name, 0L);
+        List<Log> batch = new ArrayList<>(batchSize);
+        IOException unfinished = null;
+        long end = 0;
+        try {
+            while (reader.hasMore()) {
+                Log log = reader.next();
+                if (reader.records <= offset) {
+                    continue; // Already in the index
+                }
+                if (log == null) {
+                    skippedRecords++;
+                    metrics.recordFailure();
+                    System.err.println("Skipping unreadable record " + reader.records + " of " + segment);
+                    continue;
+                }
+                batch.add(log);
+                if (batch.size() == batchSize) {
+                    embed(name, batch, reader);
+                }
+            }
+            end = reader.position();
+        } catch (IOException e) {
+            // Mostly a batch the FileStore hasn't finished writing
+            unfinished = e;
+        } catch (RuntimeException e) {
+            // The vector store failed, the records the reader is past must be read again
+            closeReader(name);
+            throw e;
+        }
+
+        embed(name, batch, reader);
+        if (unfinished != null) {
+            if (!(unfinished instanceof EOFException)) {
+                // Corrupt rather than cut short, this shows up again every pass
+                System.err.println("Could not read " + segment + ": " + unfinished);
+            }
+            try {
+                // Next pass reads the batch again from its start, its records already
+                // embedded are skipped by the offset
+                reader.rewind();
+            } catch (IOException e) {
+                closeReader(name);
+            }
+        } else if (!newest) {
+            idleLengths.put(name, end);
+            closeReader(name);
+        }
+    }
+
+    // Embeds the batch and moves the segment's offset past everything read, skipped records included
+    private void embed(String segmentName, List<Log> batch, SegmentReader reader) {
+        if (!batch.isEmpty()) {
+            long startNanos = System.nanoTime();
+            try {
+                vectorStore.appendLog(batch);
+            } catch (Exception e) {
+                metrics.recordFailure();
+                throw new RuntimeException("Could not index " + batch.size() + " logs of " + segmentName, e);
+            }
+            metrics.recordWrite(batch.size(), System.nanoTime() - startNanos);
+            uncommitted += batch.size();
+            batch.clear();
+        }
+        if (reader.records > offsets.getOrDefault(segmentName, 0L)) {
+            offsets.put(segmentName, reader.records);
+            offsetsMoved = true;
+        }
+    }
+
+    private void closeReader(String name) {
+        SegmentReader reader = readers.remove(name);
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    private void forgetDeletedSegments(List<File> segments) {
+        Set<String> present = new HashSet<>();
+        for (File segment : segments) {
+            present.add(segment.getName());
+        }
+        offsets.keySet().retainAll(present);
+        idleLengths.keySet().retainAll(present);
+        for (String name : new ArrayList<>(readers.keySet())) {
+            if (!present.contains(name)) {
+                closeReader(name);
+            }
+        }
+    }
+
+    private void commit() {
+        boolean compact = generation == 0 || wholeIndexDue
+                || deltas.size() >= MAX_DELTAS || deltaBytes > indexBytes;
+        if (!compact && commitDelta()) {
+            return;
+        }
+        commitIndex();
+    }
+
+    // Writes what was added since the last commit, then adds it to the checkpoint
+    private boolean commitDelta() {
+        File delta = new File(stateDirectory, "delta-" + generation + "-" + (deltas.size() + 1) + ".bin");
+        List<String> committed = new ArrayList<>(deltas);
+        committed.add(delta.getName());
+        try {
+            try (FileOutputStream out = new FileOutputStream(delta)) {
+                if (vectorStore.saveIndexChanges(new BufferedOutputStream(out)) < 0) {
+                    // Logs were deleted since the last commit
+                    delta.delete();
+                    return false;
+                }
+                out.getFD().sync();
+            }
+            writeCheckpoint("index-" + generation + ".bin", committed, generation);
+        } catch (IOException e) {
+            // The store no longer has these changes to write, only the whole index has them
+            delta.delete();
+            metrics.recordFailure();
+            System.err.println("Could not commit index delta, writing the whole index: " + e.getMessage());
+            wholeIndexDue = true;
+            return false;
+        }
+        deltas.add(delta.getName());
+        deltaBytes += delta.length();
+        return true;
+    }
+
+    // Writes the index first, then points the checkpoint at it, then drops the old index and deltas
+    private void commitIndex() {
+        long next = generation + 1;
+        File index = new File(stateDirectory, "index-" + next + ".bin");
+        try {
+            try (FileOutputStream out = new FileOutputStream(index)) {
+                vectorStore.saveIndex(new BufferedOutputStream(out));
+                out.getFD().sync();
+            }
+            writeCheckpoint(index.getName(), List.of(), next);
+        } catch (IOException e) {
+            index.delete();
+            metrics.recordFailure();
+            throw new RuntimeException("Could not commit index checkpoint", e);
+        }
+
+        new File(stateDirectory, "index-" + generation + ".bin").delete();
+        for (String name : deltas) {
+            new File(stateDirectory, name).delete();
+        }
+        generation = next;
+        deltas.clear();
+        indexBytes = index.length();
+        deltaBytes = 0;
+        wholeIndexDue = false;
+    }
+
+    private void writeCheckpoint(String index, List<String> indexDeltas, long indexGeneration) throws IOException {
+        File checkpointFile = new File(stateDirectory, CHECKPOINT_FILE);
+        File pending = new File(stateDirectory, CHECKPOINT_FILE + ".tmp");
+
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("generation", Long.toString(indexGeneration));
+        checkpoint.setProperty("index", index);
+        checkpoint.setProperty("deltas", String.join(",", indexDeltas));
+        offsets.forEach((name, offset) -> checkpoint.setProperty(SEGMENT_KEY + name, Long.toString(offset)));
+
+        try (FileOutputStream out = new FileOutputStream(pending)) {
+            checkpoint.store(out, "Records of each log segment that are in " + index + " and its deltas");
+            out.getFD().sync();
+        }
+        Files.move(pending.toPath(), checkpointFile.toPath(),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * How many records of each segment are in the committed index.
+     */
+    public synchronized Map<String, Long> getOffsets() {
+        return new TreeMap<>(offsets);
+    }
+
+    /**
+     * Records indexed by this instance, not counting those restored from a checkpoint.
+     */
+    public synchronized long getIndexedRecords() {
+        return indexedRecords;
+    }
+
+    /**
+     * Records loaded from the checkpoint when this instance was created.
+     */
+    public synchronized long getRestoredRecords() {
+        return restoredRecords;
+    }
+
+    /**
+     * Records passed over because they couldn't be read as a log, counted again after a restart
+     * only if no commit followed them.
+     */
+    public synchronized long getSkippedRecords() {
+        return skippedRecords;
+    }
+
+    public DatastoreMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Stops the background passes, waiting for one that is running so its commit isn't cut short.
+     */
+    public void close() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = tailer;
+            tailer = null;
+        }
+        if (running != null) {
+            running.shutdown();
+            try {
+                running.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            for (String name : new ArrayList<>(readers.keySet())) {
+                closeReader(name);
+            }
+        }
+    }
+
+    /**
+     * An open segment and how many records have been read from it.
+     */
+    private static final class SegmentReader implements Closeable {
+        // What an ObjectOutputStream writes before anything else, and before each batch
+        private static final byte[] STREAM_HEADER = {(byte) 0xAC, (byte) 0xED, 0x00, 0x05};
+        private static final int TC_RESET = 0x79;
+
+        private final File segment;
+        private FileInputStream file;
+        private ReadAheadStream buffered;
+        private ObjectInputStream in;
+        private long records = 0;
+        // Where the batch being read starts and how many records are before it
+        private long batchStart;
+        private long recordsBeforeBatch = 0;
+
+        private SegmentReader(File segment) throws IOException {
+            this.segment = segment;
+            open(0);
+            this.batchStart = position();
+        }
+
+        // A batch starts with a reset, so nothing in it refers back to an earlier one and a
+        // fresh stream given the header can read it
+        private void open(long start) throws IOException {
+            FileInputStream opened = new FileInputStream(segment);
+            try {
+                opened.getChannel().position(start);
+                ReadAheadStream stream = new ReadAheadStream(opened);
+                in = new ObjectInputStream(start == 0 ? stream
+                        : new SequenceInputStream(new ByteArrayInputStream(STREAM_HEADER), stream));
+                file = opened;
+                buffered = stream;
+            } catch (IOException e) {
+                opened.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Goes back to the start of the batch being read, after it turned out to be cut short.
+         */
+        private void rewind() throws IOException {
+            close();
+            open(batchStart);
+            records = recordsBeforeBatch;
+        }
+
+        // Whether there is anything past the last whole record read
+        private boolean hasMore() throws IOException {
+            return position() < file.getChannel().size();
+        }
+
+        private long position() throws IOException {
+            return buffered.consumed();
+        }
+
+        /**
+         * Reads the next record.
+         * @return the record, or null if it isn't a Log or its class can't be loaded.
+         */
+        private Log next() throws IOException {
+            if (peek() == TC_RESET) {
+                batchStart = position();
+                recordsBeforeBatch = records;
+            }
+            Object record;
+            try {
+                record = in.readObject();
+            } catch (ClassNotFoundException e) {
+                // The whole object has been read, the stream is at the next one
+                record = null;
+            }
+            records++;
+            return record instanceof Log ? (Log) record : null;
+        }
+
+        // The object stream holds nothing back between records, the next byte is the file's
+        private int peek() throws IOException {
+            buffered.mark(1);
+            int next = buffered.read();
+            buffered.reset();
+            return next;
+        }
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Only ever read from
+            }
+        }
+    }
+
+    // Knows how much of the file was handed out, as opposed to read into its buffer
+    private static final class ReadAheadStream extends BufferedInputStream {
+        private final FileInputStream file;
+
+        private ReadAheadStream(FileInputStream file) {
+            super(file, 64 * 1024);
+            this.file = file;
+        }
+
+        private synchronized long consumed() throws IOException {
+            return file.getChannel().position() - (count - pos);
+        }
+    }
+}
@@ -9,29 +9,65 @@ import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
 import dev.langchain4j.model.embedding.AllMiniLmL6V2EmbeddingModel;
-import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import logger.enums.Severity;
+import logger.metrics.DatastoreMetrics;
 import logger.pojo.Log;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
-public class VectorStoreDatastore implements Datastore {
+public class VectorStoreDatastore implements Datastore, AutoCloseable {
 
-    private final EmbeddingStore<TextSegment> embeddingStore;
+    private static final Duration DEFAULT_COMPACTION_INTERVAL = Duration.ofSeconds(30);
+
+    private final CompactingEmbeddingStore embeddingStore;
 //    private final EmbeddingStoreIngestor ingestor;
     private final EmbeddingModel embeddingModel;
 
+    // Entries older than this are expired by the background compactor, null keeps everything
+    private volatile Duration ttl;
+
+    private final ScheduledExecutorService compactor;
+
+    private final DatastoreMetrics metrics = new DatastoreMetrics("VectorStoreDatastore");
+
     public VectorStoreDatastore() {
+        this(null, DEFAULT_COMPACTION_INTERVAL);
+    }
+
+    public VectorStoreDatastore(Duration ttl) {
+        this(ttl, DEFAULT_COMPACTION_INTERVAL);
+    }
+
+    public VectorStoreDatastore(Duration ttl, Duration compactionInterval) {
         // 1. Define the Embedding Model (how to convert text to vectors)
         // Make sure your OPENAI_API_KEY environment variable is set!
         this.embeddingModel = new AllMiniLmL6V2EmbeddingModel();
 
         // 2. Define the Embedding Store (where to save the vectorized logs)
-        // InMemoryEmbeddingStore is great for getting started. It's fast but not persistent.
-        this.embeddingStore = new InMemoryEmbeddingStore<>();
+        // In memory, with tombstone deletes so the store doesn't grow forever.
+        this.embeddingStore = new CompactingEmbeddingStore();
+        this.ttl = ttl;
+        this.metrics.setIndexSize(embeddingStore::size);
+
+        // 2b. Expire and compact in the background, findRelevant never waits on this
+        this.compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "vector-store-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = compactionInterval.toMillis();
+        this.compactor.scheduleWithFixedDelay(this::runMaintenance, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
 
         // 3. Create an Ingestor to simplify adding data to the store
 //        this.ingestor = EmbeddingStoreIngestor.builder()
@@ -56,10 +92,22 @@ public class VectorStoreDatastore implements Datastore {
                 .collect(Collectors.toList());
 
         // Step 2: Use the EmbeddingModel to create embeddings for all segments in a batch
-        List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
+        long startNanos = System.nanoTime();
+        List<Embedding> embeddings;
+        try {
+            embeddings = embeddingModel.embedAll(segments).content();
+        } catch (RuntimeException e) {
+            metrics.recordFailure();
+            throw e;
+        }
+        metrics.recordEmbedding(System.nanoTime() - startNanos);
 
         // Step 3: Add the embeddings and their corresponding segments directly to the store
-        embeddingStore.addAll(embeddings, segments);
+        List<Long> timestamps = logCollection.stream()
+                .map(this::timestampMillis)
+                .collect(Collectors.toList());
+        embeddingStore.addAll(embeddings, segments, timestamps);
+        metrics.recordWrite(segments.size(), System.nanoTime() - startNanos);
 
         System.out.println("✅ Ingested and stored " + segments.size() + " logs directly into the vector store.");
     }
@@ -70,9 +118,10 @@ public class VectorStoreDatastore implements Datastore {
      */
     private TextSegment logToTextSegment(Log log) {
         // Create a rich text content for better semantic search
-        String logContent = String.format("Severity: %s. Message: %s. StackTrace: %s",
+        String logContent = String.format("Severity: %s. Message: %s.%s StackTrace: %s",
                 log.getSeverity(),
                 log.getData(),
+                log.getRepeatCount() > 1 ? " Repeated " + log.getRepeatCount() + " times." : "",
                 log.getStackTrace() != null ? log.getStackTrace() : "None");
 
         // Store structured data as metadata for precise filtering later on
@@ -80,7 +129,22 @@ public class VectorStoreDatastore implements Datastore {
                 .add("severity", log.getSeverity().name())
                 .add("threadId", log.getThreadId())
                 .add("threadName", log.getThreadName())
-                .add("timestamp", log.getTimestamp().toInstant().toString()); // ISO-8601 format is standard
+                .add("timestamp", log.getTimestamp().toInstant().toString()) // ISO-8601 format is standard
+                .put("samplingRate", log.getSamplingRate())
+                .put("repeatCount", log.getRepeatCount());
+        if (log.getFirstSeen() != null) {
+            metadata.put("firstSeen", log.getFirstSeen().toInstant().toString());
+        }
+        if (log.getLastSeen() != null) {
+            metadata.put("lastSeen", log.getLastSeen().toInstant().toString());
+        }
+        if (log.getMdc() != null) {
+            log.getMdc().forEach((key, value) -> {
+                if (value != null) {
+                    metadata.put("mdc." + key, value);
+                }
+            });
+        }
 
         return TextSegment.from(logContent, metadata);
     }
@@ -90,22 +154,124 @@ public class VectorStoreDatastore implements Datastore {
         TextSegment segment = logToTextSegment(log);
 
         // Step 2: Embed the single segment
+        long startNanos = System.nanoTime();
         Embedding embedding = embeddingModel.embed(segment).content();
+        metrics.recordEmbedding(System.nanoTime() - startNanos);
 
         // Step 3: Add the single embedding and segment to the store
-        embeddingStore.add(embedding, segment);
+        embeddingStore.addAll(List.of(embedding), List.of(segment), List.of(timestampMillis(log)));
+        metrics.recordWrite(1, System.nanoTime() - startNanos);
+    }
+
+    // A collapsed log expires with the last of its repeats
+    private long timestampMillis(Log log) {
+        if (log.getLastSeen() != null) {
+            return log.getLastSeen().getTime();
+        }
+        return log.getTimestamp() != null ? log.getTimestamp().getTime() : System.currentTimeMillis();
     }
 
     /**
-     * NOTE: InMemoryEmbeddingStore does not support deleting entries.
-     * This method is a placeholder. For a real application, you would need
-     * a vector database (like Chroma) that supports deletion.
+     * Applies the retention policy right away: expires everything past the TTL
+     * and compacts the index. Does nothing beyond compaction when no TTL is set.
      */
     @Override
     public void deleteLog() {
-        System.err.println("WARNING: Deletion is not supported by InMemoryEmbeddingStore.");
-        // In a real scenario with a proper DB, you'd implement deletion logic here,
-        // e.g., deleting logs older than a certain date.
+        runMaintenance();
+    }
+
+    /**
+     * Deletes a single log by the embedding id returned in its {@link dev.langchain4j.store.embedding.EmbeddingMatch}.
+     */
+    public void deleteLog(String embeddingId) {
+        embeddingStore.remove(embeddingId);
+    }
+
+    /**
+     * Deletes every log whose timestamp falls in [from, to).
+     * @return the number of logs deleted.
+     */
+    public int deleteLogs(Instant from, Instant to) {
+        long fromMillis = from.toEpochMilli();
+        long toMillis = to.toEpochMilli();
+        return embeddingStore.removeIf(entry ->
+                entry.getTimestampMillis() >= fromMillis && entry.getTimestampMillis() < toMillis);
+    }
+
+    /**
+     * Deletes every log of the given severity.
+     * @return the number of logs deleted.
+     */
+    public int deleteLogs(Severity severity) {
+        String name = severity.name();
+        return embeddingStore.removeIf(entry ->
+                entry.getSegment() != null && name.equals(entry.getSegment().metadata().getString("severity")));
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    private void runMaintenance() {
+        try {
+            Duration currentTtl = this.ttl;
+            if (currentTtl != null) {
+                long cutoff = System.currentTimeMillis() - currentTtl.toMillis();
+                embeddingStore.removeIf(entry -> entry.getTimestampMillis() < cutoff);
+            }
+            embeddingStore.compact();
+        } catch (Exception e) {
+            // Never let one bad pass kill the scheduled task
+            System.err.println("Vector store maintenance failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the whole index, embeddings included, so it can be restored without embedding again.
+     * @return the number of logs written.
+     */
+    public int saveIndex(OutputStream out) throws IOException {
+        return embeddingStore.writeSnapshot(out);
+    }
+
+    /**
+     * Replaces the index with one written by {@link #saveIndex}.
+     * @return the number of logs loaded.
+     */
+    public int loadIndex(InputStream in) throws IOException {
+        return embeddingStore.readSnapshot(in);
+    }
+
+    /**
+     * Writes only the logs added since the last {@link #saveIndex}, {@link #loadIndex} or call to
+     * this, for {@link #loadIndexChanges} to apply on top of that index.
+     * @return the number of logs written, or -1 when logs were deleted since and a whole index
+     * has to be saved instead, nothing is written then.
+     */
+    public int saveIndexChanges(OutputStream out) throws IOException {
+        return embeddingStore.writeChanges(out);
+    }
+
+    /**
+     * Adds the logs written by {@link #saveIndexChanges} to the index.
+     * @return the number of logs loaded.
+     */
+    public int loadIndexChanges(InputStream in) throws IOException {
+        return embeddingStore.readChanges(in);
+    }
+
+    @Override
+    public DatastoreMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdownNow();
     }
 
     // Getter to allow the QueryProcessor to access the store
@@ -5,28 +5,101 @@ package logger.data;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import logger.data.Datastore;
+import logger.metrics.DatastoreMetrics;
 import logger.pojo.Log;
 
-import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
-public class networkDataStore implements Datastore{
+/**
+ * Ships batches to the Python server's /logs/ingest.
+ *
+ * Batches are queued and sent with {@link HttpClient#sendAsync} over HTTP/2 where the
+ * server supports it, so several requests are in flight on one connection without
+ * parking a thread each. How many may be in flight is tuned by AIMD: the limit grows by
+ * one per round trip while responses come back quickly, and halves on 5xx/429, I/O errors,
+ * timeouts or when latency climbs well above the best seen for requests of the same size.
+ * Batches that queue up behind the limit are coalesced into one request, so a slow server
+ * gets fewer, larger requests; those take longer by themselves, which is why they are
+ * only ever compared with requests about as large.
+ *
+ * One sender thread takes batches off the queue, serializes them and starts their
+ * requests; responses only free a slot and wake it. Neither the callers queueing batches
+ * nor the HttpClient's threads ever serialize or send.
+ */
+public class networkDataStore implements Datastore, AutoCloseable {
+
+    private static final int DEFAULT_MAX_CONCURRENCY = 32;
+    private static final int DEFAULT_MAX_COALESCED_RECORDS = 5000;
+    private static final int INITIAL_CONCURRENCY = 4;
+
+    // Responses this many times slower than the baseline on average count as congestion
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    // Latency is tracked per power of two of records in the request, up to 2^15 and over
+    private static final int SIZE_CLASSES = 16;
+
+    // How long the synchronous appendLog waits for its batch
+    private static final long SEND_TIMEOUT_SECONDS = 30;
 
     private final String serverUrl;
     private final HttpClient httpClient;
     private final Gson gson;
+    private final DatastoreMetrics metrics = new DatastoreMetrics("networkDataStore");
+
+    private final int maxConcurrency;
+    private final int maxCoalescedRecords;
+
+    // Everything below is guarded by sendLock
+    private final Object sendLock = new Object();
+    private final Deque<PendingBatch> queue = new ArrayDeque<>();
+    private double concurrencyLimit = INITIAL_CONCURRENCY;
+    private int inFlightRequests = 0;
+    // Best and average round trip of each size class
+    private final long[] baselineRttNanos = new long[SIZE_CLASSES];
+    private final long[] smoothedRttNanos = new long[SIZE_CLASSES];
+    // Average round trip of any size, how long a decrease takes to show
+    private long roundTripNanos = 0;
+    private long lastDecreaseNanos = 0;
+    private long coalescedBatches = 0;
+    private long limitDecreases = 0;
+    private boolean closed = false;
+
+    private final Thread sender;
+
+    private volatile Duration requestTimeout = Duration.ofSeconds(SEND_TIMEOUT_SECONDS);
 
     public networkDataStore(String serverUrl) {
+        this(serverUrl, DEFAULT_MAX_CONCURRENCY, DEFAULT_MAX_COALESCED_RECORDS);
+    }
+
+    /**
+     * @param maxConcurrency upper bound for the number of requests in flight.
+     * @param maxCoalescedRecords queued batches are merged into one request up to this many logs.
+     */
+    public networkDataStore(String serverUrl, int maxConcurrency, int maxCoalescedRecords) {
         this.serverUrl = serverUrl; // e.g., "http://localhost:8000"
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.maxCoalescedRecords = Math.max(1, maxCoalescedRecords);
 
         // Optimize: Use a shared HttpClient instance
+        // HTTP/2 multiplexes requests on one connection, falls back to HTTP/1.1 if the server can't
         this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
                 .connectTimeout(Duration.ofSeconds(5)) // Don't hang forever if Python is down
                 .build();
 
@@ -34,12 +107,23 @@ public class networkDataStore implements Datastore{
         this.gson = new GsonBuilder()
                 .setDateFormat("yyyy-MM-dd HH:mm:ss")
                 .create();
+
+        Arrays.fill(baselineRttNanos, Long.MAX_VALUE);
+        this.sender = new Thread(this::sendQueued, "plogger-network-sender");
+        this.sender.setDaemon(true);
+        this.sender.start();
     }
     @Override
     public void addLog(Log log) {
 
     }
 
+    /**
+     * Sends the batch through the same queue as {@link #appendLogAsync} and blocks the
+     * caller until it is acknowledged, for at most 30 seconds. Throws if the server
+     * rejected it or it could not be sent, and TimeoutException once the 30 seconds are
+     * up; the batch stays queued or in flight then and may still be delivered.
+     */
     @Override
     public void appendLog(Collection<Log> logCollection) throws TimeoutException {
 
@@ -48,41 +132,294 @@ public class networkDataStore implements Datastore{
         }
 
         try {
-            // 1. Convert the Batch of Logs to JSON String
-            String jsonPayload = gson.toJson(logCollection);
-
-            // 2. Build the Request
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(serverUrl + "/logs" +"/ingest")) // The Python endpoint
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
-                    .build();
-
-            // 3. Send Request (Synchronous, because Logger runs this in a background thread)
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            // 4. Handle Response
-            if (response.statusCode() != 200) {
-                // If Python server rejects it (e.g., 500 error), you might want to throw
-                // so the Logger can retry or log to a fallback file.
-                System.err.println("Server returned error: " + response.body());
-                throw new RuntimeException("Log ingestion failed with status: " + response.statusCode());
+            appendLogAsync(logCollection).get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while sending logs", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+
+    }
+
+    /**
+     * Queues the batch for the sender. The future completes once the server accepted it
+     * (possibly merged with other batches), and fails on I/O errors and non-2xx responses.
+     */
+    @Override
+    public CompletableFuture<Void> appendLogAsync(Collection<Log> logCollection) {
+        if (logCollection == null || logCollection.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        PendingBatch batch = new PendingBatch(logCollection);
+        synchronized (sendLock) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("networkDataStore is closed"));
+            }
+            queue.addLast(batch);
+            sendLock.notifyAll();
+        }
+        return batch.done;
+    }
+
+    /**
+     * A batch waiting to be sent, with the future its caller holds.
+     */
+    private static final class PendingBatch {
+        private final Collection<Log> logs;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final long queuedNanos = System.nanoTime();
+
+        private PendingBatch(Collection<Log> logs) {
+            this.logs = logs;
+        }
+    }
+
+    // The sender thread: sends whatever is queued as slots free up, until closed and drained
+    private void sendQueued() {
+        while (true) {
+            List<PendingBatch> group;
+            synchronized (sendLock) {
+                try {
+                    while (queue.isEmpty() ? !closed : inFlightRequests >= (int) concurrencyLimit) {
+                        sendLock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    // close gave up waiting
+                    failQueued(new TimeoutException("Closed before the batch was sent"));
+                    return;
+                }
+                if (queue.isEmpty()) {
+                    return;
+                }
+                group = takeGroup();
+                inFlightRequests++;
             }
+            send(group);
+        }
+    }
+
+    private void failQueued(Throwable error) {
+        PendingBatch batch;
+        while ((batch = queue.pollFirst()) != null) {
+            batch.done.completeExceptionally(error);
+        }
+    }
 
-        } catch (IOException | InterruptedException e) {
-            // Restore interrupt status if interrupted
-            if (e instanceof InterruptedException) {
-                Thread.currentThread().interrupt();
+    // The head of the queue plus whatever queued behind it fits in one request
+    private List<PendingBatch> takeGroup() {
+        List<PendingBatch> group = new ArrayList<>();
+        PendingBatch first = queue.pollFirst();
+        group.add(first);
+        int records = first.logs.size();
+        while (!queue.isEmpty() && records + queue.peekFirst().logs.size() <= maxCoalescedRecords) {
+            PendingBatch next = queue.pollFirst();
+            records += next.logs.size();
+            group.add(next);
+        }
+        if (group.size() > 1) {
+            coalescedBatches += group.size() - 1;
+        }
+        return group;
+    }
+
+    private void send(List<PendingBatch> group) {
+        Collection<Log> logs;
+        if (group.size() == 1) {
+            logs = group.get(0).logs;
+        } else {
+            List<Log> merged = new ArrayList<>();
+            for (PendingBatch batch : group) {
+                merged.addAll(batch.logs);
             }
-            e.printStackTrace();
-            // Depending on strictness, you might want to rethrow as RuntimeException
-            // to signal the Logger that the batch failed.
+            logs = merged;
         }
 
+        HttpRequest request;
+        try {
+            // 1-2. Convert the batch to JSON and build the request
+            request = buildIngestRequest(logs);
+        } catch (RuntimeException e) {
+            complete(group, logs.size(), e);
+            onResponse(0, logs.size(), false);
+            return;
+        }
+
+        // 3. Send Request, the response is handled on the HttpClient's threads
+        long sendNanos = System.nanoTime();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    long rttNanos = System.nanoTime() - sendNanos;
+                    if (error != null) {
+                        complete(group, logs.size(), error instanceof CompletionException ? error.getCause() : error);
+                        onResponse(rttNanos, logs.size(), true);
+                        return;
+                    }
+
+                    // 4. Handle Response, the server answers 202 once the batch is queued for ingestion
+                    int status = response.statusCode();
+                    metrics.recordSend(status, rttNanos);
+                    if (status / 100 != 2) {
+                        System.err.println("Server returned error: " + response.body());
+                        complete(group, logs.size(),
+                                new RuntimeException("Log ingestion failed with status: " + status));
+                    } else {
+                        complete(group, logs.size(), null);
+                    }
+                    onResponse(rttNanos, logs.size(), status >= 500 || status == 429);
+                });
+    }
+
+    private void complete(List<PendingBatch> group, int records, Throwable error) {
+        if (error != null) {
+            metrics.recordFailure();
+            for (PendingBatch batch : group) {
+                batch.done.completeExceptionally(error);
+            }
+            return;
+        }
+        metrics.recordWrite(records, System.nanoTime() - group.get(0).queuedNanos);
+        for (PendingBatch batch : group) {
+            batch.done.complete(null);
+        }
+    }
+
+    // Frees the request's slot, adjusts the concurrency limit and wakes the sender
+    private void onResponse(long rttNanos, int records, boolean failed) {
+        synchronized (sendLock) {
+            inFlightRequests--;
+            long now = System.nanoTime();
+
+            boolean slow = false;
+            if (!failed && rttNanos > 0) {
+                roundTripNanos = roundTripNanos == 0 ? rttNanos : roundTripNanos + ((rttNanos - roundTripNanos) >> 3);
+
+                int size = Math.min(SIZE_CLASSES - 1, 31 - Integer.numberOfLeadingZeros(Math.max(1, records)));
+                long smoothed = smoothedRttNanos[size];
+                if (rttNanos < baselineRttNanos[size]) {
+                    // A new best means the slower ones before it were a cold connection or
+                    // JIT warm-up, not the server queueing; don't average them in
+                    baselineRttNanos[size] = rttNanos;
+                    smoothed = rttNanos;
+                } else {
+                    // Follow a lasting change in the server's latency, slowly
+                    baselineRttNanos[size] += (rttNanos - baselineRttNanos[size]) >> 7;
+                    smoothed += (rttNanos - smoothed) >> 3;
+                }
+                smoothedRttNanos[size] = smoothed;
+                // Smoothed, so one slow response (a GC pause) isn't congestion
+                slow = smoothed > baselineRttNanos[size] * LATENCY_TOLERANCE;
+            }
+
+            if (failed || slow) {
+                // Halve at most once per round trip, responses to the requests sent
+                // before the last decrease don't count against the new limit
+                if (now - lastDecreaseNanos > roundTripNanos) {
+                    concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+                    lastDecreaseNanos = now;
+                    limitDecreases++;
+                }
+            } else if (rttNanos > 0) {
+                concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1 / concurrencyLimit);
+            }
+            sendLock.notifyAll();
+        }
+    }
+
+    private HttpRequest buildIngestRequest(Collection<Log> logCollection) {
+        // 1. Convert the Batch of Logs to JSON String
+        long serializeNanos = System.nanoTime();
+        String jsonPayload = gson.toJson(logCollection);
+        metrics.recordSerialization(System.nanoTime() - serializeNanos);
+
+        // 2. Build the Request
+        return HttpRequest.newBuilder()
+                .uri(URI.create(serverUrl + "/logs" +"/ingest")) // The Python endpoint
+                .header("Content-Type", "application/json")
+                // A hung exchange fails instead of holding its slot forever
+                .timeout(requestTimeout)
+                .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
+                .build();
+    }
+
+    /**
+     * How long a request may take before it fails with an HttpTimeoutException, 30 seconds
+     * by default. Counts as an error for the concurrency limit.
+     */
+    public void setRequestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public int getConcurrencyLimit() {
+        synchronized (sendLock) {
+            return (int) concurrencyLimit;
+        }
+    }
+
+    public int getInFlightRequests() {
+        synchronized (sendLock) {
+            return inFlightRequests;
+        }
+    }
+
+    public int getQueuedBatches() {
+        synchronized (sendLock) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Batches that were sent as part of another batch's request instead of their own.
+     */
+    public long getCoalescedBatches() {
+        synchronized (sendLock) {
+            return coalescedBatches;
+        }
+    }
+
+    /**
+     * How many times errors or latency halved the concurrency limit.
+     */
+    public long getLimitDecreases() {
+        synchronized (sendLock) {
+            return limitDecreases;
+        }
+    }
+
+    @Override
+    public DatastoreMetrics getMetrics() {
+        return metrics;
     }
 
     @Override
     public void deleteLog() {
 
     }
+
+    /**
+     * Stops accepting batches and waits up to 30 seconds for the sender to start a request
+     * for every batch already queued; those still queued after that fail. Requests in
+     * flight are not waited for.
+     */
+    @Override
+    public void close() {
+        synchronized (sendLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            sendLock.notifyAll();
+        }
+        try {
+            sender.join(TimeUnit.SECONDS.toMillis(SEND_TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sender.interrupt();
+    }
 }
@@ -0,0 +1,24 @@
+package logger.enums;
+
+/**
+ * How the Logger hands batches to its datastore.
+ */
+public enum DispatchMode {
+    /**
+     * A fixed pool of platform threads calls appendLogAsync; batches may overlap and
+     * arrive out of order.
+     */
+    POOLED,
+    /**
+     * One batch at a time per lane, in the order appendLog was called. Each batch is
+     * built and handed to appendLogAsync on a virtual thread on Java 21+, or on the fixed
+     * pool on older runtimes; the lane's next batch waits until the datastore completed
+     * that future, so one that failed or timed out is never overtaken.
+     *
+     * The Logger is a singleton for one project, so by default there is a single lane and
+     * batches are strictly serial: throughput is one batch per datastore round trip.
+     * Logger.setOrderingKey splits batches into one lane per key (tenant, request id...)
+     * that are shipped in parallel, keeping order only within each key.
+     */
+    ORDERED
+}
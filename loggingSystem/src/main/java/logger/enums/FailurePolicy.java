@@ -0,0 +1,9 @@
+package logger.enums;
+
+/**
+ * What a sink does with a batch its datastore failed to write.
+ */
+public enum FailurePolicy {
+    DROP,
+    RETRY
+}
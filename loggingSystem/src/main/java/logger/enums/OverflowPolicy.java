@@ -0,0 +1,10 @@
+package logger.enums;
+
+/**
+ * What a sink does with a new batch when its queue is already full.
+ */
+public enum OverflowPolicy {
+    DROP_NEWEST,
+    DROP_OLDEST,
+    BLOCK
+}
@@ -3,12 +3,12 @@ package logger.enums;
 import java.io.Serializable;
 
 public enum Severity implements Serializable {
-    UNDEFINED("undefined"),
-    CRITICAL("critical"),
-    HIGH("high"),
-    MEDIUM("medium"),
-    LOW("low"),
-    WARN("warn");
+    UNDEFINED("undefined", 0),
+    CRITICAL("critical", 50),
+    HIGH("high", 40),
+    MEDIUM("medium", 20),
+    LOW("low", 10),
+    WARN("warn", 30);
 
     public String getName() {
         return name;
@@ -18,10 +18,21 @@ public enum Severity implements Serializable {
         this.name = name;
     }
 
+    /**
+     * Rank used for threshold checks, higher is more severe.
+     * Declaration order doesn't follow severity, so compare levels, not ordinals.
+     */
+    public int getLevel() {
+        return level;
+    }
+
     private String name;
 
-    Severity(String name){
+    private final int level;
+
+    Severity(String name, int level){
         this.name = name;
+        this.level = level;
     }
 
 }
@@ -0,0 +1,220 @@
+package logger.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import logger.data.Datastore;
+import logger.data.networkDataStore;
+import logger.enums.Severity;
+import logger.pojo.Log;
+import logger.service.Logger;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Logback appender that feeds SLF4J logging into the PLogger pipeline.
+ *
+ * <pre>
+ * &lt;appender name="PLOGGER" class="logger.logback.PLoggerAppender"&gt;
+ *     &lt;userId&gt;da86dca2-...&lt;/userId&gt;
+ *     &lt;projectName&gt;PaymentService&lt;/projectName&gt;
+ *     &lt;serverUrl&gt;http://logs.internal:8000&lt;/serverUrl&gt;
+ * &lt;/appender&gt;
+ * </pre>
+ *
+ * Logs go to a networkDataStore at {@code serverUrl}, or to any Datastore given with
+ * {@code <datastore class="logger.data.FileStore"/>} or {@link #setDatastore}; with neither
+ * the Logger's default is used. The Logger is a singleton, so only the appender that
+ * creates it picks its datastore.
+ *
+ * The calling thread only converts the event and buffers it; batches are shipped from
+ * the appender's own flush thread every {@code flushIntervalMillis}, or sooner once
+ * {@code batchSize} logs are pending. Caller data is only used when Logback already
+ * computed it (includeCallerData on the encoder or appender), the stack is never
+ * walked again here.
+ */
+public class PLoggerAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    private String userId;
+    private String projectName;
+    private String serverUrl;
+    private Datastore datastore;
+    private int batchSize = 500;
+    private long flushIntervalMillis = 1000;
+    private long stopTimeoutMillis = 10_000;
+
+    private Logger logger;
+    private ScheduledExecutorService flusher;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    // Logging done while we are appending (e.g. by a datastore) must not loop back in
+    private static final ThreadLocal<Boolean> APPENDING = ThreadLocal.withInitial(() -> false);
+
+    @Override
+    public void start() {
+        if (userId == null || projectName == null) {
+            addError("userId and projectName must be set for appender " + getName());
+            return;
+        }
+
+        if (datastore != null) {
+            logger = Logger.getInstance(userId, projectName, datastore);
+        } else if (serverUrl != null) {
+            logger = Logger.getInstance(userId, projectName, new networkDataStore(serverUrl));
+        } else {
+            logger = Logger.getInstance(userId, projectName);
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "plogger-logback-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        flusher.shutdownNow();
+        try {
+            logger.appendLog().get(stopTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            addWarn("Could not flush pending logs on stop", e);
+        }
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        if (APPENDING.get()) {
+            return;
+        }
+        Severity severity = toSeverity(event.getLevel());
+        if (!logger.isEnabled(severity)) {
+            return;
+        }
+
+        APPENDING.set(true);
+        try {
+            logger.addCapturedLog(toLog(event, severity), callSite(event));
+        } finally {
+            APPENDING.set(false);
+        }
+
+        if (logger.getPendingRecords() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        try {
+            logger.appendLog();
+        } catch (Exception e) {
+            addWarn("Failed to ship batch", e);
+        }
+    }
+
+    static Severity toSeverity(Level level) {
+        switch (level.toInt()) {
+            case Level.ERROR_INT:
+                return Severity.HIGH;
+            case Level.WARN_INT:
+                return Severity.WARN;
+            case Level.INFO_INT:
+            case Level.DEBUG_INT:
+            case Level.TRACE_INT:
+                return Severity.LOW;
+            default:
+                return Severity.UNDEFINED;
+        }
+    }
+
+    private Log toLog(ILoggingEvent event, Severity severity) {
+        Log log = new Log(event.getFormattedMessage(), severity);
+        // Logback keeps sub-millisecond time, which orders the logs of a burst
+        log.setTimestamp(Timestamp.from(event.getInstant()));
+        log.setThreadName(event.getThreadName());
+
+        // Synchronous appenders run on the logging thread, so its id is the right one;
+        // behind an AsyncAppender Logback only kept the name
+        Thread current = Thread.currentThread();
+        boolean sameThread = current.getName().equals(event.getThreadName());
+        log.setThreadId(sameThread ? Long.toString(current.getId()) : "unknown");
+
+        // The SLF4J logger name is the only record of where the log came from without caller data
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        Map<String, String> context = mdc == null ? new HashMap<>() : new HashMap<>(mdc);
+        context.put("logger", event.getLoggerName());
+        log.setMdc(context);
+
+        log.setStackTrace(stackTrace(event));
+        return log;
+    }
+
+    // The throwable if there is one, otherwise the caller data Logback already has
+    private static String stackTrace(ILoggingEvent event) {
+        IThrowableProxy throwable = event.getThrowableProxy();
+        if (throwable != null) {
+            return ThrowableProxyUtil.asString(throwable);
+        }
+        if (event.hasCallerData()) {
+            StringBuilder stackElements = new StringBuilder();
+            for (StackTraceElement element : event.getCallerData()) {
+                stackElements.append("\tat").append(element.toString()).append("\n");
+            }
+            return stackElements.toString();
+        }
+        return null;
+    }
+
+    private static String callSite(ILoggingEvent event) {
+        if (event.hasCallerData() && event.getCallerData().length > 0) {
+            StackTraceElement caller = event.getCallerData()[0];
+            return caller.getClassName() + "#" + caller.getMethodName() + ":" + caller.getLineNumber();
+        }
+        return event.getLoggerName();
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public void setProjectName(String projectName) {
+        this.projectName = projectName;
+    }
+
+    public void setServerUrl(String serverUrl) {
+        this.serverUrl = serverUrl;
+    }
+
+    /**
+     * Where the logs are shipped; takes precedence over serverUrl.
+     */
+    public void setDatastore(Datastore datastore) {
+        this.datastore = datastore;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public void setStopTimeoutMillis(long stopTimeoutMillis) {
+        this.stopTimeoutMillis = stopTimeoutMillis;
+    }
+}
@@ -0,0 +1,111 @@
+package logger.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and histograms for one Datastore. Each store records only what applies to it:
+ * network stores record serialization, send latency and status codes, vector stores
+ * record embedding time and index size.
+ */
+public class DatastoreMetrics implements DatastoreMetricsMXBean {
+
+    private final String name;
+
+    private final LongAdder batchesWritten = new LongAdder();
+    private final LongAdder batchesFailed = new LongAdder();
+    private final LongAdder recordsWritten = new LongAdder();
+    private final Histogram writeLatencyMicros = new Histogram();
+    private final Histogram serializationMicros = new Histogram();
+    private final Histogram sendLatencyMicros = new Histogram();
+    private final Histogram embeddingMicros = new Histogram();
+    private final Map<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+
+    private volatile LongSupplier indexSize = () -> 0;
+
+    public DatastoreMetrics(String name) {
+        this.name = name;
+    }
+
+    public void recordWrite(int records, long nanos) {
+        batchesWritten.increment();
+        recordsWritten.add(records);
+        writeLatencyMicros.record(nanos / 1000);
+    }
+
+    public void recordFailure() {
+        batchesFailed.increment();
+    }
+
+    public void recordSerialization(long nanos) {
+        serializationMicros.record(nanos / 1000);
+    }
+
+    public void recordSend(int statusCode, long nanos) {
+        sendLatencyMicros.record(nanos / 1000);
+        statusCodes.computeIfAbsent(statusCode, code -> new LongAdder()).increment();
+    }
+
+    public void recordEmbedding(long nanos) {
+        embeddingMicros.record(nanos / 1000);
+    }
+
+    public void setIndexSize(LongSupplier indexSize) {
+        this.indexSize = indexSize;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getBatchesWritten() {
+        return batchesWritten.sum();
+    }
+
+    @Override
+    public long getBatchesFailed() {
+        return batchesFailed.sum();
+    }
+
+    @Override
+    public long getRecordsWritten() {
+        return recordsWritten.sum();
+    }
+
+    @Override
+    public Map<String, Long> getWriteLatencyMicros() {
+        return writeLatencyMicros.snapshot();
+    }
+
+    @Override
+    public Map<String, Long> getSerializationMicros() {
+        return serializationMicros.snapshot();
+    }
+
+    @Override
+    public Map<String, Long> getSendLatencyMicros() {
+        return sendLatencyMicros.snapshot();
+    }
+
+    @Override
+    public Map<String, Long> getStatusCodes() {
+        Map<String, Long> codes = new TreeMap<>();
+        statusCodes.forEach((code, count) -> codes.put(Integer.toString(code), count.sum()));
+        return codes;
+    }
+
+    @Override
+    public Map<String, Long> getEmbeddingMicros() {
+        return embeddingMicros.snapshot();
+    }
+
+    @Override
+    public long getIndexSize() {
+        return indexSize.getAsLong();
+    }
+}
@@ -0,0 +1,30 @@
+package logger.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of a {@link logger.data.Datastore}. Latencies are in microseconds;
+ * attributes a store has no use for stay at zero.
+ */
+public interface DatastoreMetricsMXBean {
+
+    String getName();
+
+    long getBatchesWritten();
+
+    long getBatchesFailed();
+
+    long getRecordsWritten();
+
+    Map<String, Long> getWriteLatencyMicros();
+
+    Map<String, Long> getSerializationMicros();
+
+    Map<String, Long> getSendLatencyMicros();
+
+    Map<String, Long> getStatusCodes();
+
+    Map<String, Long> getEmbeddingMicros();
+
+    long getIndexSize();
+}
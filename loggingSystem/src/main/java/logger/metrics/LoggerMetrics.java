@@ -0,0 +1,125 @@
+package logger.metrics;
+
+import logger.enums.Severity;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and histograms for one Logger. Recording is lock-free; gauges such as the
+ * pending queue depth are read from the Logger only when someone asks for them.
+ */
+public class LoggerMetrics implements LoggerMetricsMXBean {
+
+    private static final Severity[] SEVERITIES = Severity.values();
+
+    private final LongAdder[] accepted = new LongAdder[SEVERITIES.length];
+    private final LongAdder[] dropped = new LongAdder[SEVERITIES.length];
+    private final LongAdder deferredFlushes = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder collapsedRecords = new LongAdder();
+    private final Histogram batchSizes = new Histogram();
+    private final Histogram flushLatencyMicros = new Histogram();
+
+    private final LongSupplier pendingRecords;
+    private final LongSupplier inFlightBatches;
+    private final LongSupplier inFlightBytes;
+
+    public LoggerMetrics(LongSupplier pendingRecords, LongSupplier inFlightBatches, LongSupplier inFlightBytes) {
+        for (int i = 0; i < SEVERITIES.length; i++) {
+            accepted[i] = new LongAdder();
+            dropped[i] = new LongAdder();
+        }
+        this.pendingRecords = pendingRecords;
+        this.inFlightBatches = inFlightBatches;
+        this.inFlightBytes = inFlightBytes;
+    }
+
+    public void recordAccepted(Severity severity) {
+        accepted[severity.ordinal()].increment();
+    }
+
+    public void recordDropped(Severity severity) {
+        dropped[severity.ordinal()].increment();
+    }
+
+    public void recordDeferredFlush() {
+        deferredFlushes.increment();
+    }
+
+    public void recordFailedBatch() {
+        failedBatches.increment();
+    }
+
+    public void recordCollapsed(int records) {
+        collapsedRecords.add(records);
+    }
+
+    public void recordBatchSize(int size) {
+        batchSizes.record(size);
+    }
+
+    public void recordFlushLatency(long nanos) {
+        flushLatencyMicros.record(nanos / 1000);
+    }
+
+    private static Map<String, Long> bySeverity(LongAdder[] counters) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Severity severity : SEVERITIES) {
+            counts.put(severity.name(), counters[severity.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getAcceptedBySeverity() {
+        return bySeverity(accepted);
+    }
+
+    @Override
+    public Map<String, Long> getDroppedBySeverity() {
+        return bySeverity(dropped);
+    }
+
+    @Override
+    public long getPendingRecords() {
+        return pendingRecords.getAsLong();
+    }
+
+    @Override
+    public long getInFlightBatches() {
+        return inFlightBatches.getAsLong();
+    }
+
+    @Override
+    public long getInFlightBytes() {
+        return inFlightBytes.getAsLong();
+    }
+
+    @Override
+    public long getDeferredFlushes() {
+        return deferredFlushes.sum();
+    }
+
+    @Override
+    public long getFailedBatches() {
+        return failedBatches.sum();
+    }
+
+    @Override
+    public long getCollapsedRecords() {
+        return collapsedRecords.sum();
+    }
+
+    @Override
+    public Map<String, Long> getBatchSizes() {
+        return batchSizes.snapshot();
+    }
+
+    @Override
+    public Map<String, Long> getFlushLatencyMicros() {
+        return flushLatencyMicros.snapshot();
+    }
+}
@@ -0,0 +1,35 @@
+package logger.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of a {@link logger.service.Logger}. Latencies are in microseconds.
+ */
+public interface LoggerMetricsMXBean {
+
+    Map<String, Long> getAcceptedBySeverity();
+
+    Map<String, Long> getDroppedBySeverity();
+
+    long getPendingRecords();
+
+    long getInFlightBatches();
+
+    long getInFlightBytes();
+
+    /**
+     * appendLog calls that left the buffer in place because the in-flight limit was reached.
+     */
+    long getDeferredFlushes();
+
+    long getFailedBatches();
+
+    /**
+     * Logs folded into an identical log of the same batch instead of being shipped.
+     */
+    long getCollapsedRecords();
+
+    Map<String, Long> getBatchSizes();
+
+    Map<String, Long> getFlushLatencyMicros();
+}
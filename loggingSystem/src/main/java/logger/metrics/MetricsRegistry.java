@@ -0,0 +1,60 @@
+package logger.metrics;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registers metrics beans with the platform MBean server under the "logger" domain,
+ * e.g. {@code logger:type=Datastore,project="PaymentService",name="networkDataStore"}.
+ */
+public final class MetricsRegistry {
+
+    private static final String DOMAIN = "logger";
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * Registers the bean, replacing one left behind under the same name.
+     * @return the name it was registered under, or null if JMX refused it.
+     */
+    public static ObjectName register(String type, String project, String name, Object mbean) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            StringBuilder objectName = new StringBuilder(DOMAIN)
+                    .append(":type=").append(type);
+            if (project != null) {
+                objectName.append(",project=").append(ObjectName.quote(project));
+            }
+            if (name != null) {
+                objectName.append(",name=").append(ObjectName.quote(name));
+            }
+            ObjectName registered = new ObjectName(objectName.toString());
+            if (server.isRegistered(registered)) {
+                server.unregisterMBean(registered);
+            }
+            server.registerMBean(mbean, registered);
+            return registered;
+        } catch (JMException e) {
+            // Metrics are best effort, never fail the caller over them
+            System.err.println("Failed to register " + type + " metrics with JMX: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public static void unregister(ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (InstanceNotFoundException e) {
+            // already gone
+        } catch (JMException e) {
+            System.err.println("Failed to unregister " + name + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package logger.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A point-in-time copy of a Logger's metrics and those of the datastores behind it.
+ * Latencies are in microseconds.
+ */
+public class MetricsSnapshot {
+
+    private final long capturedAtMillis;
+    private final Map<String, Long> acceptedBySeverity;
+    private final Map<String, Long> droppedBySeverity;
+    private final long pendingRecords;
+    private final long inFlightBatches;
+    private final long inFlightBytes;
+    private final long deferredFlushes;
+    private final long failedBatches;
+    private final long collapsedRecords;
+    private final Map<String, Long> batchSizes;
+    private final Map<String, Long> flushLatencyMicros;
+    private final List<DatastoreSnapshot> datastores;
+
+    public MetricsSnapshot(LoggerMetrics logger, List<DatastoreMetrics> datastores) {
+        this.capturedAtMillis = System.currentTimeMillis();
+        this.acceptedBySeverity = logger.getAcceptedBySeverity();
+        this.droppedBySeverity = logger.getDroppedBySeverity();
+        this.pendingRecords = logger.getPendingRecords();
+        this.inFlightBatches = logger.getInFlightBatches();
+        this.inFlightBytes = logger.getInFlightBytes();
+        this.deferredFlushes = logger.getDeferredFlushes();
+        this.failedBatches = logger.getFailedBatches();
+        this.collapsedRecords = logger.getCollapsedRecords();
+        this.batchSizes = logger.getBatchSizes();
+        this.flushLatencyMicros = logger.getFlushLatencyMicros();
+
+        List<DatastoreSnapshot> stores = new ArrayList<>();
+        for (DatastoreMetrics metrics : datastores) {
+            stores.add(new DatastoreSnapshot(metrics));
+        }
+        this.datastores = Collections.unmodifiableList(stores);
+    }
+
+    public long getCapturedAtMillis() {
+        return capturedAtMillis;
+    }
+
+    public Map<String, Long> getAcceptedBySeverity() {
+        return acceptedBySeverity;
+    }
+
+    public Map<String, Long> getDroppedBySeverity() {
+        return droppedBySeverity;
+    }
+
+    public long getPendingRecords() {
+        return pendingRecords;
+    }
+
+    public long getInFlightBatches() {
+        return inFlightBatches;
+    }
+
+    public long getInFlightBytes() {
+        return inFlightBytes;
+    }
+
+    public long getDeferredFlushes() {
+        return deferredFlushes;
+    }
+
+    public long getFailedBatches() {
+        return failedBatches;
+    }
+
+    public long getCollapsedRecords() {
+        return collapsedRecords;
+    }
+
+    public Map<String, Long> getBatchSizes() {
+        return batchSizes;
+    }
+
+    public Map<String, Long> getFlushLatencyMicros() {
+        return flushLatencyMicros;
+    }
+
+    public List<DatastoreSnapshot> getDatastores() {
+        return datastores;
+    }
+
+    public static class DatastoreSnapshot {
+        private final String name;
+        private final long batchesWritten;
+        private final long batchesFailed;
+        private final long recordsWritten;
+        private final Map<String, Long> writeLatencyMicros;
+        private final Map<String, Long> serializationMicros;
+        private final Map<String, Long> sendLatencyMicros;
+        private final Map<String, Long> statusCodes;
+        private final Map<String, Long> embeddingMicros;
+        private final long indexSize;
+
+        DatastoreSnapshot(DatastoreMetrics metrics) {
+            this.name = metrics.getName();
+            this.batchesWritten = metrics.getBatchesWritten();
+            this.batchesFailed = metrics.getBatchesFailed();
+            this.recordsWritten = metrics.getRecordsWritten();
+            this.writeLatencyMicros = metrics.getWriteLatencyMicros();
+            this.serializationMicros = metrics.getSerializationMicros();
+            this.sendLatencyMicros = metrics.getSendLatencyMicros();
+            this.statusCodes = metrics.getStatusCodes();
+            this.embeddingMicros = metrics.getEmbeddingMicros();
+            this.indexSize = metrics.getIndexSize();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getBatchesWritten() {
+            return batchesWritten;
+        }
+
+        public long getBatchesFailed() {
+            return batchesFailed;
+        }
+
+        public long getRecordsWritten() {
+            return recordsWritten;
+        }
+
+        public Map<String, Long> getWriteLatencyMicros() {
+            return writeLatencyMicros;
+        }
+
+        public Map<String, Long> getSerializationMicros() {
+            return serializationMicros;
+        }
+
+        public Map<String, Long> getSendLatencyMicros() {
+            return sendLatencyMicros;
+        }
+
+        public Map<String, Long> getStatusCodes() {
+            return statusCodes;
+        }
+
+        public Map<String, Long> getEmbeddingMicros() {
+            return embeddingMicros;
+        }
+
+        public long getIndexSize() {
+            return indexSize;
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package logger.pojo;
 
 import logger.enums.Severity;
+import logger.utils.MessageFormatter;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serial;
 import java.io.Serializable;
 import java.sql.Timestamp;
+import java.util.Map;
 
 public class Log implements Serializable {
     @Serial
@@ -23,12 +27,37 @@ public class Log implements Serializable {
         this.severity = severity;
     }
 
+    /**
+     * A log whose message is only formatted from the template when it is first read
+     * or serialized, i.e. when the batch holding it is shipped. Args that could still
+     * change are turned into strings now, so the message shows them as they were.
+     */
+    public Log(Severity severity, String messageTemplate, Object[] messageArgs){
+        this.severity = severity;
+        this.messageTemplate = messageTemplate;
+        this.messageArgs = MessageFormatter.snapshot(messageArgs);
+    }
+
     public String getData() {
+        if (data == null && messageTemplate != null) {
+            data = MessageFormatter.format(messageTemplate, messageArgs);
+            messageTemplate = null;
+            messageArgs = null;
+        }
         return data;
     }
 
     public void setData(String data) {
         this.data = data;
+        this.messageTemplate = null;
+        this.messageArgs = null;
+    }
+
+    // Args may not be Serializable, so copies and files always get the formatted message
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getData();
+        out.defaultWriteObject();
     }
 
     public Timestamp getTimestamp() {
@@ -55,6 +84,10 @@ public class Log implements Serializable {
         this.threadName = threadName;
     }
 
+    private transient String messageTemplate;
+
+    private transient Object[] messageArgs;
+
     private Timestamp timestamp;
 
     private String threadId;
@@ -69,6 +102,20 @@ public class Log implements Serializable {
 
     private String user_Id;
 
+    // Diagnostic context (e.g. SLF4J MDC) attached by the caller, may be null
+    private Map<String, String> mdc;
+
+    // Probability this log was kept with when sampled, count it as 1 / samplingRate logs
+    private double samplingRate = 1.0;
+
+    // How many identical logs this one stands for, and when the first and last were logged.
+    // The times are only set on logs collapsed from more than one.
+    private int repeatCount = 1;
+
+    private Timestamp firstSeen;
+
+    private Timestamp lastSeen;
+
     public void setProject_name(String project_name) {
         this.project_name = project_name;
     }
@@ -93,6 +140,46 @@ public class Log implements Serializable {
         this.stackTrace = stackTrace;
     }
 
+    public Map<String, String> getMdc() {
+        return mdc;
+    }
+
+    public void setMdc(Map<String, String> mdc) {
+        this.mdc = mdc;
+    }
+
+    public double getSamplingRate() {
+        return samplingRate;
+    }
+
+    public void setSamplingRate(double samplingRate) {
+        this.samplingRate = samplingRate;
+    }
+
+    public int getRepeatCount() {
+        return repeatCount;
+    }
+
+    public void setRepeatCount(int repeatCount) {
+        this.repeatCount = repeatCount;
+    }
+
+    public Timestamp getFirstSeen() {
+        return firstSeen;
+    }
+
+    public void setFirstSeen(Timestamp firstSeen) {
+        this.firstSeen = firstSeen;
+    }
+
+    public Timestamp getLastSeen() {
+        return lastSeen;
+    }
+
+    public void setLastSeen(Timestamp lastSeen) {
+        this.lastSeen = lastSeen;
+    }
+
     public Severity getSeverity() {
         return severity;
     }
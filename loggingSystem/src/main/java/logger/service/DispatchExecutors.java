@@ -0,0 +1,32 @@
+package logger.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors the Logger ships batches on. This is the Java 17 version; the jar also
+ * carries a Java 21 version (src/main/java21) that runs ordered sends on virtual threads.
+ */
+final class DispatchExecutors {
+
+    private static final int POOL_SIZE = 10;
+
+    private DispatchExecutors() {
+    }
+
+    static ExecutorService pooled() {
+        return Executors.newFixedThreadPool(POOL_SIZE);
+    }
+
+    /**
+     * Where ordered, blocking sends run. Without virtual threads every project waiting
+     * on the server holds one of these threads.
+     */
+    static ExecutorService ordered() {
+        return pooled();
+    }
+
+    static boolean usesVirtualThreads() {
+        return false;
+    }
+}
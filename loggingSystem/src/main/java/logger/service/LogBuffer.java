@@ -0,0 +1,347 @@
+package logger.service;
+
+import logger.enums.Severity;
+import logger.pojo.Log;
+import logger.utils.MessageFormatter;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Logger's pending logs, stored column by column instead of as Log objects.
+ *
+ * A pending log is a slot in a handful of parallel arrays: epoch micros and thread id as
+ * longs, severity as a byte, and references to the message, stack and thread name
+ * (interned, so every log from a thread shares one String). Project and user aren't
+ * stored at all, they are the Logger's. That is ~50 bytes per log before the message,
+ * against ~200 for a Log with its Timestamp, thread id String and HashSet entry.
+ *
+ * Logs are only built as {@link Log} objects by {@link #toLogs}, when the batch is shipped.
+ * Not thread safe, the Logger guards it with its queue lock and swaps in a cleared buffer
+ * on every appendLog so buffers are reused.
+ */
+final class LogBuffer {
+
+    private static final Severity[] SEVERITIES = Severity.values();
+
+    // Thread ids that were captured as something other than a number, e.g. by a bridge
+    static final long UNKNOWN_THREAD_ID = -1;
+
+    private static final int MAX_INTERNED_THREAD_NAMES = 4096;
+    private static final Map<String, String> THREAD_NAMES = new ConcurrentHashMap<>();
+
+    // Rough heap cost of a shipped Log besides its strings, and of one formatted stack frame
+    private static final int LOG_OVERHEAD_BYTES = 128;
+    private static final int STACK_FRAME_BYTES = 160;
+
+    private int size = 0;
+    private long estimatedBytes = 0;
+
+    private long[] epochMicros;
+    private long[] threadIds;
+    private byte[] severities;
+    private float[] samplingRates;
+    private String[] threadNames;
+    private String[] messages;
+    private String[] templates;
+    private Object[][] args;
+    // Either a formatted String or the captured StackTraceElement[]
+    private Object[] stackTraces;
+    private Map<String, String>[] mdcs;
+
+    LogBuffer(int initialCapacity) {
+        allocate(Math.max(16, initialCapacity));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void allocate(int capacity) {
+        epochMicros = new long[capacity];
+        threadIds = new long[capacity];
+        severities = new byte[capacity];
+        samplingRates = new float[capacity];
+        threadNames = new String[capacity];
+        messages = new String[capacity];
+        templates = new String[capacity];
+        args = new Object[capacity][];
+        stackTraces = new Object[capacity];
+        mdcs = new Map[capacity];
+    }
+
+    /**
+     * @param message the formatted message, or null if template and args are given instead.
+     * @param stackTrace a formatted String, a StackTraceElement[] to format when shipped, or null.
+     */
+    void add(long micros, long threadId, String threadName, Severity severity, double samplingRate,
+             String message, String template, Object[] messageArgs, Object stackTrace,
+             Map<String, String> mdc) {
+        if (size == epochMicros.length) {
+            grow();
+        }
+        int i = size++;
+        epochMicros[i] = micros;
+        threadIds[i] = threadId;
+        threadNames[i] = intern(threadName);
+        severities[i] = (byte) severity.ordinal();
+        samplingRates[i] = (float) samplingRate;
+        messages[i] = message;
+        templates[i] = template;
+        args[i] = messageArgs;
+        stackTraces[i] = stackTrace;
+        mdcs[i] = mdc;
+
+        long bytes = LOG_OVERHEAD_BYTES;
+        if (message != null) {
+            bytes += 2L * message.length();
+        } else if (template != null) {
+            bytes += 2L * template.length() + 16L * (messageArgs == null ? 0 : messageArgs.length);
+        }
+        if (stackTrace instanceof String) {
+            bytes += 2L * ((String) stackTrace).length();
+        } else if (stackTrace instanceof StackTraceElement[]) {
+            bytes += (long) STACK_FRAME_BYTES * ((StackTraceElement[]) stackTrace).length;
+        }
+        estimatedBytes += bytes;
+    }
+
+    private void grow() {
+        int capacity = epochMicros.length * 2;
+        epochMicros = Arrays.copyOf(epochMicros, capacity);
+        threadIds = Arrays.copyOf(threadIds, capacity);
+        severities = Arrays.copyOf(severities, capacity);
+        samplingRates = Arrays.copyOf(samplingRates, capacity);
+        threadNames = Arrays.copyOf(threadNames, capacity);
+        messages = Arrays.copyOf(messages, capacity);
+        templates = Arrays.copyOf(templates, capacity);
+        args = Arrays.copyOf(args, capacity);
+        stackTraces = Arrays.copyOf(stackTraces, capacity);
+        mdcs = Arrays.copyOf(mdcs, capacity);
+    }
+
+    private static String intern(String threadName) {
+        if (threadName == null) {
+            return null;
+        }
+        String interned = THREAD_NAMES.get(threadName);
+        if (interned != null) {
+            return interned;
+        }
+        if (THREAD_NAMES.size() >= MAX_INTERNED_THREAD_NAMES) {
+            return threadName;
+        }
+        interned = THREAD_NAMES.putIfAbsent(threadName, threadName);
+        return interned != null ? interned : threadName;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int capacity() {
+        return epochMicros.length;
+    }
+
+    /**
+     * Heap the batch will take once built into Logs, used for the in-flight limit.
+     */
+    long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    Severity severityAt(int i) {
+        return SEVERITIES[severities[i]];
+    }
+
+    /**
+     * Builds a Log for every slot, formatting deferred messages and captured stacks.
+     */
+    List<Log> toLogs(String projectName, String userId) {
+        List<Log> logs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            logs.add(toLog(i, message(i), projectName, userId));
+        }
+        return logs;
+    }
+
+    /**
+     * Like {@link #toLogs}, but logs with the same message, severity, call site and MDC are
+     * shipped once, in the place of the first, carrying how many there were and when the
+     * first and last were logged. The MDC is part of the key because bridged logs have no
+     * call site, only the logger name the appender puts in it; the first one's thread and
+     * stack are kept, and the sampling rate is set so that repeatCount / samplingRate still
+     * estimates how many were logged before sampling.
+     */
+    List<Log> toCollapsedLogs(String projectName, String userId) {
+        List<Log> logs = new ArrayList<>();
+        Map<DuplicateKey, Duplicates> seen = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String message = message(i);
+            DuplicateKey key = new DuplicateKey(severities[i], message, callSite(stackTraces[i]), mdcs[i]);
+            Duplicates duplicates = seen.get(key);
+            if (duplicates == null) {
+                Log log = toLog(i, message, projectName, userId);
+                seen.put(key, new Duplicates(log, epochMicros[i], samplingRates[i]));
+                logs.add(log);
+            } else {
+                duplicates.add(epochMicros[i], samplingRates[i]);
+            }
+        }
+
+        for (Duplicates duplicates : seen.values()) {
+            if (duplicates.count > 1) {
+                Log log = duplicates.log;
+                log.setRepeatCount(duplicates.count);
+                log.setFirstSeen(toTimestamp(duplicates.firstMicros));
+                log.setLastSeen(toTimestamp(duplicates.lastMicros));
+                log.setSamplingRate(duplicates.count / duplicates.weight);
+            }
+        }
+        return logs;
+    }
+
+    private String message(int i) {
+        if (messages[i] == null && templates[i] != null) {
+            return MessageFormatter.format(templates[i], args[i]);
+        }
+        return messages[i];
+    }
+
+    private Log toLog(int i, String message, String projectName, String userId) {
+        Log log = new Log(message, SEVERITIES[severities[i]]);
+        log.setTimestamp(toTimestamp(epochMicros[i]));
+        log.setThreadId(threadIds[i] == UNKNOWN_THREAD_ID ? "unknown" : Long.toString(threadIds[i]));
+        log.setThreadName(threadNames[i]);
+        log.setStackTrace(formatStackTrace(stackTraces[i]));
+        log.setMdc(mdcs[i]);
+        log.setSamplingRate(samplingRates[i]);
+        log.setProject_name(projectName);
+        log.setUser_Id(userId);
+        return log;
+    }
+
+    // First frame outside the Logger for a captured stack; a formatted stack is compared whole
+    private static Object callSite(Object stackTrace) {
+        if (!(stackTrace instanceof StackTraceElement[])) {
+            return stackTrace;
+        }
+        for (StackTraceElement element : (StackTraceElement[]) stackTrace) {
+            String className = element.getClassName();
+            if (!className.equals(Thread.class.getName()) && !className.equals(Logger.class.getName())) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    private static final class DuplicateKey {
+        private final byte severity;
+        private final String message;
+        private final Object callSite;
+        private final Map<String, String> mdc;
+        private final int hash;
+
+        private DuplicateKey(byte severity, String message, Object callSite, Map<String, String> mdc) {
+            this.severity = severity;
+            this.message = message;
+            this.callSite = callSite;
+            this.mdc = mdc;
+            this.hash = Objects.hash(severity, message, callSite, mdc);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DuplicateKey)) {
+                return false;
+            }
+            DuplicateKey other = (DuplicateKey) o;
+            return severity == other.severity && Objects.equals(message, other.message)
+                    && Objects.equals(callSite, other.callSite) && Objects.equals(mdc, other.mdc);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // The log shipped for a run of duplicates, and what the others add to it
+    private static final class Duplicates {
+        private final Log log;
+        private int count = 1;
+        private long firstMicros;
+        private long lastMicros;
+        // Sum of 1 / samplingRate, the number of logs these stand for
+        private double weight;
+
+        private Duplicates(Log log, long micros, float samplingRate) {
+            this.log = log;
+            this.firstMicros = micros;
+            this.lastMicros = micros;
+            this.weight = 1.0 / samplingRate;
+        }
+
+        private void add(long micros, float samplingRate) {
+            count++;
+            firstMicros = Math.min(firstMicros, micros);
+            lastMicros = Math.max(lastMicros, micros);
+            weight += 1.0 / samplingRate;
+        }
+    }
+
+    /**
+     * Drops every reference so messages can be collected, keeping the arrays for reuse.
+     */
+    void clear() {
+        Arrays.fill(threadNames, 0, size, null);
+        Arrays.fill(messages, 0, size, null);
+        Arrays.fill(templates, 0, size, null);
+        Arrays.fill(args, 0, size, null);
+        Arrays.fill(stackTraces, 0, size, null);
+        Arrays.fill(mdcs, 0, size, null);
+        size = 0;
+        estimatedBytes = 0;
+    }
+
+    private static String formatStackTrace(Object stackTrace) {
+        if (!(stackTrace instanceof StackTraceElement[])) {
+            return (String) stackTrace;
+        }
+        StringBuilder stackElements = new StringBuilder();
+        for (StackTraceElement element : (StackTraceElement[]) stackTrace) {
+            stackElements.append("\tat").append(element.toString()).append("\n");
+        }
+        return stackElements.toString();
+    }
+
+    static long toEpochMicros(Timestamp timestamp) {
+        return Math.floorDiv(timestamp.getTime(), 1000L) * 1_000_000L + timestamp.getNanos() / 1_000;
+    }
+
+    static Timestamp toTimestamp(long epochMicros) {
+        Timestamp timestamp = new Timestamp(Math.floorDiv(epochMicros, 1_000L));
+        timestamp.setNanos((int) Math.floorMod(epochMicros, 1_000_000L) * 1_000);
+        return timestamp;
+    }
+
+    // Ids from Thread.getId() are numeric, anything else captured by a bridge becomes unknown
+    static long parseThreadId(String threadId) {
+        if (threadId == null || threadId.isEmpty() || threadId.length() > 18) {
+            return UNKNOWN_THREAD_ID;
+        }
+        for (int i = 0; i < threadId.length(); i++) {
+            if (!Character.isDigit(threadId.charAt(i))) {
+                return UNKNOWN_THREAD_ID;
+            }
+        }
+        return Long.parseLong(threadId);
+    }
+}
@@ -0,0 +1,77 @@
+package logger.service;
+
+import logger.enums.Severity;
+import logger.metrics.MetricsRegistry;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-project severity thresholds that can be changed while the application runs,
+ * from code or through the {@code logger:type=LogLevels} MBean.
+ *
+ * A Logger keeps a reference to its project's {@link Threshold}, so checking whether
+ * a severity is enabled costs one volatile read and never allocates.
+ */
+public class LogLevels implements LogLevelsMXBean {
+
+    /**
+     * The least severe level still logged for one project.
+     */
+    public static final class Threshold {
+        private volatile int minLevel;
+        private volatile Severity severity;
+
+        private Threshold(Severity severity) {
+            set(severity);
+        }
+
+        public boolean isEnabled(Severity severity) {
+            return severity.getLevel() >= minLevel;
+        }
+
+        public Severity get() {
+            return severity;
+        }
+
+        void set(Severity severity) {
+            this.severity = severity;
+            this.minLevel = severity.getLevel();
+        }
+    }
+
+    private static final LogLevels INSTANCE = new LogLevels();
+
+    private static final Map<String, Threshold> thresholds = new ConcurrentHashMap<>();
+
+    // Everything is logged until someone says otherwise
+    private static final Severity DEFAULT_THRESHOLD = Severity.UNDEFINED;
+
+    static {
+        MetricsRegistry.register("LogLevels", null, null, INSTANCE);
+    }
+
+    private LogLevels() {
+    }
+
+    public static Threshold thresholdFor(String project) {
+        return thresholds.computeIfAbsent(project == null ? "" : project, p -> new Threshold(DEFAULT_THRESHOLD));
+    }
+
+    public static void setThreshold(String project, Severity severity) {
+        thresholdFor(project).set(severity);
+    }
+
+    @Override
+    public Map<String, String> getThresholds() {
+        Map<String, String> current = new TreeMap<>();
+        thresholds.forEach((project, threshold) -> current.put(project, threshold.get().name()));
+        return current;
+    }
+
+    @Override
+    public void setThreshold(String project, String severity) {
+        setThreshold(project, Severity.valueOf(severity.trim().toUpperCase()));
+    }
+}
@@ -0,0 +1,19 @@
+package logger.service;
+
+import java.util.Map;
+
+/**
+ * JMX control for per-project severity thresholds.
+ */
+public interface LogLevelsMXBean {
+
+    /**
+     * Project name to the least severe Severity still logged.
+     */
+    Map<String, String> getThresholds();
+
+    /**
+     * @param severity a {@link logger.enums.Severity} name, e.g. "MEDIUM".
+     */
+    void setThreshold(String project, String severity);
+}
@@ -0,0 +1,208 @@
+package logger.service;
+
+import logger.enums.Severity;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides, before a log is buffered, whether it is kept.
+ *
+ * Three checks run in order, and CRITICAL and HIGH logs skip all of them:
+ * 1. a token bucket per Severity,
+ * 2. a token bucket per call site (class, method and line that called the Logger),
+ * 3. a random sample whose rate drops as the pending buffer fills up.
+ *
+ * Kept logs are stamped with the sampling rate that applied, so downstream
+ * counts can be re-weighted by 1 / rate. The rate covers all three checks: the random
+ * sample's probability times the share of logs each bucket let through over the last
+ * whole second (an estimate, a bucket only knows what it admitted once that second is over).
+ *
+ * The Logger runs no sampler unless one is set with {@link Logger#setSampler}.
+ */
+public class LogSampler {
+
+    /**
+     * A lock-free token bucket, kept as the "theoretical arrival time" of the next
+     * permit (GCRA) so that taking a permit is a single CAS.
+     */
+    static final class TokenBucket {
+        private static final long WINDOW_NANOS = 1_000_000_000L;
+
+        private final long nanosPerPermit;
+        private final long burstNanos;
+        private final AtomicLong nextFreeNanos = new AtomicLong(System.nanoTime());
+
+        // What was asked for and let through since windowStartNanos
+        private final AtomicLong windowStartNanos = new AtomicLong(System.nanoTime());
+        private final LongAdder offered = new LongAdder();
+        private final LongAdder admitted = new LongAdder();
+        private volatile double admitRatio = 1.0;
+
+        TokenBucket(double permitsPerSecond, int burst) {
+            this.nanosPerPermit = (long) (1_000_000_000L / permitsPerSecond);
+            this.burstNanos = nanosPerPermit * Math.max(0, burst - 1);
+        }
+
+        boolean tryAcquire(long nowNanos) {
+            roll(nowNanos);
+            offered.increment();
+            while (true) {
+                long next = nextFreeNanos.get();
+                long start = Math.max(next, nowNanos);
+                if (start - nowNanos > burstNanos) {
+                    return false;
+                }
+                if (nextFreeNanos.compareAndSet(next, start + nanosPerPermit)) {
+                    admitted.increment();
+                    return true;
+                }
+            }
+        }
+
+        // Closes the window once it is a second old; only the thread that wins the CAS does
+        private void roll(long nowNanos) {
+            long start = windowStartNanos.get();
+            if (nowNanos - start < WINDOW_NANOS || !windowStartNanos.compareAndSet(start, nowNanos)) {
+                return;
+            }
+            long asked = offered.sumThenReset();
+            long let = admitted.sumThenReset();
+            if (asked > 0) {
+                // Never 0, the log being admitted right now must still count for something
+                admitRatio = (double) Math.max(1, let) / asked;
+            }
+        }
+
+        /**
+         * Share of requests let through during the last whole window, 1.0 before the first.
+         */
+        double admitRatio() {
+            return admitRatio;
+        }
+    }
+
+    // Stop tracking new call sites past this many, they share one bucket instead
+    private static final int MAX_CALL_SITES = 10_000;
+    private static final String OVERFLOW_CALL_SITE = "<other>";
+
+    // Indexed by Severity ordinal, replaced wholesale so readers never see a half-built array
+    private volatile TokenBucket[] severityBuckets = new TokenBucket[Severity.values().length];
+    private final Map<String, TokenBucket> callSiteBuckets = new ConcurrentHashMap<>();
+
+    private volatile double callSitePermitsPerSecond = 0;
+    private volatile int callSiteBurst = 0;
+
+    private volatile int pendingCapacity = 0;
+    private volatile double minSamplingRate = 0.01;
+
+    // Sampling starts once the pending buffer is this full
+    private volatile double samplingThreshold = 0.5;
+
+    /**
+     * Limits logs of one severity to the given rate. CRITICAL and HIGH are never limited.
+     */
+    public LogSampler limitSeverity(Severity severity, double permitsPerSecond, int burst) {
+        synchronized (this) {
+            TokenBucket[] buckets = severityBuckets.clone();
+            buckets[severity.ordinal()] = new TokenBucket(permitsPerSecond, burst);
+            severityBuckets = buckets;
+        }
+        return this;
+    }
+
+    /**
+     * Limits how many logs each call site may emit. A rate of 0 turns the check off.
+     */
+    public LogSampler limitCallSites(double permitsPerSecond, int burst) {
+        this.callSitePermitsPerSecond = permitsPerSecond;
+        this.callSiteBurst = burst;
+        callSiteBuckets.clear();
+        return this;
+    }
+
+    /**
+     * Samples logs randomly once the pending buffer passes threshold * capacity, falling
+     * linearly to minRate when it is full. A capacity of 0 turns sampling off.
+     */
+    public LogSampler adaptiveSampling(int pendingCapacity, double threshold, double minRate) {
+        this.pendingCapacity = pendingCapacity;
+        this.samplingThreshold = threshold;
+        this.minSamplingRate = minRate;
+        return this;
+    }
+
+    public boolean limitsCallSites() {
+        return callSitePermitsPerSecond > 0;
+    }
+
+    static boolean alwaysKept(Severity severity) {
+        return severity == Severity.CRITICAL || severity == Severity.HIGH;
+    }
+
+    /**
+     * @param callSite where the log came from, only looked at if call sites are limited.
+     * @param pendingRecords how many logs are currently buffered.
+     * @return the rate the log was kept at, token buckets included, or 0 if it should be dropped.
+     */
+    public double sample(Severity severity, String callSite, int pendingRecords) {
+        if (alwaysKept(severity)) {
+            return 1.0;
+        }
+
+        long now = System.nanoTime();
+
+        // Share of this kind of log the buckets let through, folded into the stamped rate
+        double admitted = 1.0;
+
+        TokenBucket severityBucket = severityBuckets[severity.ordinal()];
+        if (severityBucket != null) {
+            if (!severityBucket.tryAcquire(now)) {
+                return 0;
+            }
+            admitted *= severityBucket.admitRatio();
+        }
+
+        if (callSite != null && limitsCallSites()) {
+            TokenBucket callSiteBucket = callSiteBucket(callSite);
+            if (!callSiteBucket.tryAcquire(now)) {
+                return 0;
+            }
+            admitted *= callSiteBucket.admitRatio();
+        }
+
+        double rate = samplingRate(pendingRecords);
+        if (rate < 1.0 && ThreadLocalRandom.current().nextDouble() >= rate) {
+            return 0;
+        }
+        return rate * admitted;
+    }
+
+    private TokenBucket callSiteBucket(String callSite) {
+        TokenBucket bucket = callSiteBuckets.get(callSite);
+        if (bucket != null) {
+            return bucket;
+        }
+        String key = callSiteBuckets.size() < MAX_CALL_SITES ? callSite : OVERFLOW_CALL_SITE;
+        return callSiteBuckets.computeIfAbsent(key, k -> new TokenBucket(callSitePermitsPerSecond, callSiteBurst));
+    }
+
+    /**
+     * The probability a log is kept at the given buffer depth.
+     */
+    public double samplingRate(int pendingRecords) {
+        int capacity = pendingCapacity;
+        if (capacity <= 0) {
+            return 1.0;
+        }
+        double fill = Math.min(1.0, (double) pendingRecords / capacity);
+        if (fill <= samplingThreshold) {
+            return 1.0;
+        }
+        double tightening = (fill - samplingThreshold) / (1.0 - samplingThreshold);
+        return Math.max(minSamplingRate, 1.0 - tightening * (1.0 - minSamplingRate));
+    }
+}
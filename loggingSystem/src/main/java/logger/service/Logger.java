@@ -1,44 +1,145 @@
 package logger.service;
 
+import logger.data.CompositeDatastore;
 import logger.data.Datastore;
-import logger.data.FileStore;
-import logger.data.VectorStoreDatastore;
 import logger.data.networkDataStore;
+import logger.enums.DispatchMode;
 import logger.enums.Severity;
+import logger.metrics.DatastoreMetrics;
+import logger.metrics.LoggerMetrics;
+import logger.metrics.MetricsRegistry;
+import logger.metrics.MetricsSnapshot;
 import logger.pojo.Log;
-import logger.utils.DeepCopyUtil;
+import logger.utils.MessageFormatter;
 
-import java.sql.Timestamp;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import javax.management.ObjectName;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 public class Logger {
 
     private Datastore vectorStore;
 
-    private Set<Log> logTrackSet = new HashSet<>(); // capacity
+    private static final int INITIAL_BUFFER_CAPACITY = 1024;
 
-    private Queue<Set<Log>> logsProcessingQueue = new ArrayDeque<>(); // capacity
+    // Buffers bigger than this aren't kept for reuse unless they were mostly full
+    private static final int MAX_POOLED_BUFFER_CAPACITY = 64 * 1024;
+
+    // Logs waiting for the next appendLog, swapped for a cleared one on every flush
+    private LogBuffer pendingLogs = new LogBuffer(INITIAL_BUFFER_CAPACITY);
+
+    // A shipped buffer, cleared and ready to be swapped in again
+    private final AtomicReference<LogBuffer> spareBuffer = new AtomicReference<>();
+
+    // Ship identical logs of a batch once, with a repeat count
+    private volatile boolean collapseDuplicates = false;
+
+    // Returned by appendLog calls that hit the in-flight limit, completed with the batch
+    // that finally ships their logs. Guarded by queueLock
+    private CompletableFuture<Void> deferredFlush;
+
+    // Handles of batches handed to the datastore and not yet acknowledged
+    private final Set<CompletableFuture<Void>> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger inFlightBatches = new AtomicInteger();
+
+    private final AtomicLong inFlightBytes = new AtomicLong();
+
+    private volatile int maxInFlightBatches = 64;
+
+    private volatile long maxInFlightBytes = 64L * 1024 * 1024;
+
+    // Size of pendingLogs, kept outside the lock so metrics readers never block addLog
+    private volatile int pendingRecords = 0;
+
+    private final LoggerMetrics metrics =
+            new LoggerMetrics(() -> pendingRecords, inFlightBatches::get, inFlightBytes::get);
+
+    private ObjectName loggerMBean;
+
+    // By identity, so stores that share a name each keep their own bean; guarded by itself
+    private final Map<DatastoreMetrics, ObjectName> datastoreMBeans = new IdentityHashMap<>();
+
+    private final Runnable syncDatastoreMBeans = this::syncDatastoreMBeans;
+
+    private volatile boolean shuttingDown = false;
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    // Every log above the threshold is kept unless a sampler is set
+    private volatile LogSampler sampler = null;
 
 
     private String userId;
 
     private String project_name;
 
+    private final LogLevels.Threshold threshold;
+
     private final Object queueLock = new Object();
 
 
 
     private static Logger logger = null;
 
-    ExecutorService service = Executors.newFixedThreadPool(10);
+    ExecutorService service;
+
+    private final DispatchMode dispatchMode;
+
+    // Only set in ORDERED mode, chains each project's batches on the service
+    private final OrderedDispatcher orderedDispatcher;
+
+    // Only set in ORDERED mode, one lane per ordering key
+    private final OrderedDispatcher keyedDispatcher;
+
+    // ORDERED mode: the lane a log ships on; null ships the whole project on one lane
+    private volatile Function<Log, String> orderingKey = null;
 
     Logger(String userId, String project_name){
+        this(userId, project_name, new networkDataStore("http://localhost:8000"));
+    }
+
+    Logger(String userId, String project_name, Datastore datastore){
+        this(userId, project_name, datastore, defaultDispatchMode());
+    }
+
+    Logger(String userId, String project_name, Datastore datastore, DispatchMode dispatchMode){
         this.userId = userId;
         this.project_name = project_name;
-        this.vectorStore = new networkDataStore("http://localhost:8000");
+        this.threshold = LogLevels.thresholdFor(project_name);
+        this.vectorStore = datastore;
+        this.dispatchMode = dispatchMode;
+        if (dispatchMode == DispatchMode.ORDERED) {
+            this.service = DispatchExecutors.ordered();
+            this.orderedDispatcher = new OrderedDispatcher(service);
+            this.keyedDispatcher = new OrderedDispatcher(service);
+        } else {
+            this.service = DispatchExecutors.pooled();
+            this.orderedDispatcher = null;
+            this.keyedDispatcher = null;
+        }
+        registerMBeans();
+    }
+
+    // -Dplogger.dispatch=ordered switches the default without code changes
+    private static DispatchMode defaultDispatchMode() {
+        String mode = System.getProperty("plogger.dispatch");
+        if (mode == null) {
+            return DispatchMode.POOLED;
+        }
+        try {
+            return DispatchMode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown plogger.dispatch mode '" + mode + "', using POOLED");
+            return DispatchMode.POOLED;
+        }
     }
 
     public static Logger getInstance(String userId , String project_name){
@@ -52,93 +153,567 @@ public class Logger {
         return logger;
     }
 
+    /**
+     * Same as {@link #getInstance(String, String)} but ships batches to the given datastore,
+     * e.g. a {@link CompositeDatastore} fanning out to file, network and vector sinks.
+     * The datastore is only used if this call creates the instance.
+     */
+    public static Logger getInstance(String userId , String project_name, Datastore datastore){
+        if(logger == null){
+            synchronized (Logger.class) {
+                if (logger == null) {
+                    logger = new Logger(userId, project_name, datastore);
+                }
+            }
+        }
+        return logger;
+    }
+
+    /**
+     * Same as {@link #getInstance(String, String, Datastore)} with a chosen {@link DispatchMode}.
+     * ORDERED delivers this project's batches one at a time in appendLog order.
+     */
+    public static Logger getInstance(String userId , String project_name, Datastore datastore, DispatchMode dispatchMode){
+        if(logger == null){
+            synchronized (Logger.class) {
+                if (logger == null) {
+                    logger = new Logger(userId, project_name, datastore, dispatchMode);
+                }
+            }
+        }
+        return logger;
+    }
+
+    /**
+     * Shuts the current instance down and forgets it, so the next getInstance creates a new
+     * one. For tests and benchmarks that need a fresh Logger, not for application code.
+     */
+    public static void resetInstance() {
+        synchronized (Logger.class) {
+            if (logger != null) {
+                logger.shutdown(Duration.ofSeconds(10));
+                logger = null;
+            }
+        }
+    }
+
+    /**
+     * Whether logs of this severity are currently wanted for this project.
+     * One volatile read, no allocation; use it to guard expensive log arguments.
+     */
+    public boolean isEnabled(Severity severity) {
+        return threshold.isEnabled(severity);
+    }
+
+    /**
+     * Changes this project's threshold at runtime, see {@link LogLevels}.
+     */
+    public void setThreshold(Severity severity) {
+        LogLevels.setThreshold(project_name, severity);
+    }
+
+    public Severity getThreshold() {
+        return threshold.get();
+    }
+
+    /**
+     * Logs a message built from an SLF4J-style template, e.g. {@code "Order {} failed"}.
+     * Does nothing when the severity is disabled, and the message is only formatted
+     * once the batch holding it is shipped.
+     */
+    public void log(Severity severity, String template) {
+        if (threshold.isEnabled(severity)) {
+            addTemplate(severity, template, null);
+        }
+    }
+
+    public void log(Severity severity, String template, Object arg) {
+        if (threshold.isEnabled(severity)) {
+            addTemplate(severity, template, new Object[]{arg});
+        }
+    }
+
+    public void log(Severity severity, String template, Object arg1, Object arg2) {
+        if (threshold.isEnabled(severity)) {
+            addTemplate(severity, template, new Object[]{arg1, arg2});
+        }
+    }
+
+    public void log(Severity severity, String template, Object arg1, Object arg2, Object arg3) {
+        if (threshold.isEnabled(severity)) {
+            addTemplate(severity, template, new Object[]{arg1, arg2, arg3});
+        }
+    }
+
+    // The varargs array is allocated by the caller, guard with isEnabled on hot paths
+    public void log(Severity severity, String template, Object... args) {
+        if (threshold.isEnabled(severity)) {
+            addTemplate(severity, template, args);
+        }
+    }
+
     public void addLog(Log log){
-        // Todo: add timestamp and thread and stacktrace
-        synchronized (queueLock){
+        // Decide whether the log is wanted before paying for timestamps and stack traces
+        Severity severity = log.getSeverity() == null? Severity.LOW : log.getSeverity();
+        if (!threshold.isEnabled(severity)) {
+            return;
+        }
 
-//            Timestamp timestamp = new Timestamp(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC));//potential bug in searching
-            // logs in query processor
+        double samplingRate = sample(severity, null);
+        if (samplingRate == 0) {
+            return;
+        }
 
-            // Use toEpochMilli() instead
-            Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+        // The stack is kept as captured and only formatted when the batch is shipped
+        Thread thread = Thread.currentThread();
+        buffer(nowMicros(), thread.getId(), thread.getName(), severity, samplingRate,
+                log.getData(), null, null, thread.getStackTrace(), copyOf(log.getMdc()));
 
-            StackTraceElement[] elements = Thread.currentThread().getStackTrace();
+    }
 
-            StringBuilder stackElements = new StringBuilder();
+    // Logger.log without a Log object, the template is formatted when the batch is shipped
+    // from args as they were now; a trailing Throwable gives the stack trace instead
+    private void addTemplate(Severity severity, String template, Object[] args) {
+        double samplingRate = sample(severity, null);
+        if (samplingRate == 0) {
+            return;
+        }
 
-            for(StackTraceElement element: elements){
-                stackElements.append("\tat").append(element.toString()).append("\n");
-            }
+        Object[] captured = MessageFormatter.snapshot(args);
+        Throwable thrown = MessageFormatter.trailingThrowable(template, captured);
+        Thread thread = Thread.currentThread();
+        buffer(nowMicros(), thread.getId(), thread.getName(), severity, samplingRate,
+                null, template, captured,
+                thrown != null ? MessageFormatter.stackTrace(thrown) : thread.getStackTrace(), null);
+    }
+
+    /**
+     * Buffers a log whose timestamp, thread and stack trace the caller already captured,
+     * e.g. a bridge from another logging framework. Nothing is re-captured; a missing
+     * timestamp is set to now.
+     * @param callSite where the log came from, used for per call site limits; may be null.
+     */
+    public void addCapturedLog(Log log, String callSite){
+        Severity severity = log.getSeverity() == null? Severity.LOW : log.getSeverity();
+        if (!threshold.isEnabled(severity)) {
+            return;
+        }
+
+        double samplingRate = sample(severity, callSite);
+        if (samplingRate == 0) {
+            return;
+        }
+
+        long micros = log.getTimestamp() == null ? nowMicros() : LogBuffer.toEpochMicros(log.getTimestamp());
+        buffer(micros, LogBuffer.parseThreadId(log.getThreadId()), log.getThreadName(), severity, samplingRate,
+                log.getData(), null, null, log.getStackTrace(), copyOf(log.getMdc()));
+    }
 
-            String stackTrace = stackElements.toString();
+    // Runs the sampler, returns the rate the log is kept at or 0 if it should be dropped
+    private double sample(Severity severity, String knownCallSite) {
+        LogSampler currentSampler = this.sampler;
+        if (currentSampler == null) {
+            return 1.0;
+        }
 
-            log.setStackTrace(stackTrace);
-            log.setTimestamp(timestamp);
-            log.setThreadId(Long.toString(Thread.currentThread().getId()));
-            log.setThreadName(Thread.currentThread().getName());
-            log.setSeverity(log.getSeverity() == null? Severity.LOW : log.getSeverity());
-            log.setProject_name(this.project_name);
-            log.setUser_Id(this.userId);
-            put(this.logTrackSet,log);
+        String callSite = null;
+        if (currentSampler.limitsCallSites()) {
+            callSite = knownCallSite != null ? knownCallSite : callSite();
+        }
+        double rate = currentSampler.sample(severity, callSite, pendingRecords);
+        if (rate == 0) {
+            metrics.recordDropped(severity);
+        }
+        return rate;
+    }
 
+    private void buffer(long micros, long threadId, String threadName, Severity severity, double samplingRate,
+                        String message, String template, Object[] args, Object stackTrace,
+                        Map<String, String> mdc) {
+        // Only the buffer itself needs the lock
+        synchronized (queueLock){
+            pendingLogs.add(micros, threadId, threadName, severity, samplingRate,
+                    message, template, args, stackTrace, mdc);
+            pendingRecords = pendingLogs.size();
+            metrics.recordAccepted(severity);
         }
+    }
+
+    private static long nowMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000L + now.getNano() / 1_000;
+    }
+
+    // The caller may keep changing its map after handing the log over
+    private static Map<String, String> copyOf(Map<String, String> mdc) {
+        return mdc == null || mdc.isEmpty() ? null : new HashMap<>(mdc);
+    }
+
+    /**
+     * Number of logs buffered since the last appendLog.
+     */
+    public int getPendingRecords() {
+        return pendingRecords;
+    }
+
+    // First frame outside the Logger, e.g. "com.acme.PaymentService#charge:42"
+    private static String callSite() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> !frame.getClassName().equals(Logger.class.getName()))
+                .findFirst()
+                .map(frame -> frame.getClassName() + "#" + frame.getMethodName() + ":" + frame.getLineNumber())
+                .orElse(null));
+    }
+
+    /**
+     * Sets the sampler deciding which logs addLog keeps; null, the default, keeps everything.
+     * e.g. {@code new LogSampler().limitCallSites(1000, 2000).adaptiveSampling(100_000, 0.5, 0.01)}
+     * limits each call site to 1000 logs a second and samples once half of 100k logs are buffered.
+     */
+    public void setSampler(LogSampler sampler) {
+        this.sampler = sampler;
+    }
+
+    public LogSampler getSampler() {
+        return sampler;
+    }
 
+    /**
+     * When on, logs of one batch with the same message, severity, call site and MDC (a
+     * retry loop, a health check) are shipped and embedded once, with a repeat count and
+     * the times the first and last of them were logged. Off by default.
+     */
+    public void setCollapseDuplicates(boolean collapseDuplicates) {
+        this.collapseDuplicates = collapseDuplicates;
     }
 
-    public void appendLog(){
-        // Todo: Handle exception of append Log from datastore
+    public boolean isCollapseDuplicates() {
+        return collapseDuplicates;
+    }
+
+    /**
+     * Ships everything buffered since the last call as one batch.
+     * The returned handle completes once the datastore has stored the batch, or completes
+     * exceptionally if it failed. If the in-flight limit is reached the logs stay buffered
+     * and go out with the next appendLog that gets through; the handle then completes with
+     * that batch.
+     */
+    public CompletableFuture<Void> appendLog(){
             synchronized (queueLock){
 
                 if (logger == null) {
                     throw new IllegalStateException("Logger has not been initialized yet");
                 }
 
-                try{
-
-                    Set<Log>  copyTrackSet = DeepCopyUtil.deepCopy(logTrackSet);
-                    put(this.logsProcessingQueue,copyTrackSet);// deep copy error here!
-                    flushLogProcessingSet();
-
-
-                   service.submit(()->{
-                        try{
+                if (shuttingDown) {
+                    return CompletableFuture.failedFuture(new RejectedExecutionException("Logger is shutting down"));
+                }
 
-                            Set<Log> logstoUpload = null;
+                return flush();
+            }
+    }
 
+    // Called with queueLock held
+    private CompletableFuture<Void> flush() {
+        if (pendingLogs.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-                            synchronized (queueLock){
-                                     logstoUpload = logsProcessingQueue.poll();
-                                 }
+        // Bound memory held by batches the datastore hasn't acknowledged yet; over the
+        // limit the logs are left where they are rather than thrown away
+        long batchBytes = pendingLogs.estimatedBytes();
+        if (!tryAcquireInFlight(batchBytes)) {
+            metrics.recordDeferredFlush();
+            if (deferredFlush == null) {
+                deferredFlush = new CompletableFuture<>();
+            }
+            return deferredFlush;
+        }
 
-                                if(logstoUpload!= null){
-                                    vectorStore.appendLog(logstoUpload);
+        // Swap in an empty buffer; the full one is only read by the task below,
+        // which builds the Logs the datastore gets, so nothing is copied under the lock
+        LogBuffer batch = pendingLogs;
+        flushLogProcessingSet();
+        int batchSize = batch.size();
+        metrics.recordBatchSize(batchSize);
+
+        long handoffNanos = System.nanoTime();
+        CompletableFuture<Void> handle = new CompletableFuture<>();
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> releaseInFlight(released, batchBytes);
+        inFlight.add(handle);
+        if (deferredFlush != null) {
+            // Callers whose appendLog was deferred get this batch's outcome
+            CompletableFuture<Void> deferred = deferredFlush;
+            deferredFlush = null;
+            handle.whenComplete((ignored, error) -> {
+                if (error != null) {
+                    deferred.completeExceptionally(error);
+                } else {
+                    deferred.complete(null);
+                }
+            });
+        }
+        handle.whenComplete((ignored, error) -> {
+            inFlight.remove(handle);
+            release.run();
+            metrics.recordFlushLatency(System.nanoTime() - handoffNanos);
+            if (error != null) {
+                metrics.recordFailedBatch();
+                System.err.println("Failed to ship batch of " + batchSize + " logs: " + error);
+            }
+        });
+
+        if (dispatchMode == DispatchMode.ORDERED) {
+            Function<Log, String> key = orderingKey;
+            if (key == null) {
+                // This project's next batch only starts once the store is done with this one,
+                // written or failed; a send that timed out still holds the lane
+                orderedDispatcher.submit(project_name, () -> {
+                    CompletableFuture<Void> written = vectorStore.appendLogAsync(buildBatch(batch, batchSize));
+                    if (vectorStore instanceof CompositeDatastore) {
+                        release.run();
+                    }
+                    return written;
+                }).whenComplete((ignored, error) -> complete(handle, error));
+            } else {
+                // Batches are split one at a time, so each key's lane gets its logs in appendLog order
+                orderedDispatcher.submit(project_name, () -> {
+                    Map<String, List<Log>> split = splitByKey(buildBatch(batch, batchSize), key);
+                    AtomicInteger notQueued = new AtomicInteger(split.size());
+                    CompletableFuture<?>[] lanes = split.entrySet().stream()
+                            .map(lane -> keyedDispatcher.submit(lane.getKey(), () -> {
+                                CompletableFuture<Void> written = vectorStore.appendLogAsync(lane.getValue());
+                                if (vectorStore instanceof CompositeDatastore && notQueued.decrementAndGet() == 0) {
+                                    release.run();
                                 }
+                                return written;
+                            }))
+                            .toArray(CompletableFuture<?>[]::new);
+                    CompletableFuture.allOf(lanes).whenComplete((ignored, error) -> complete(handle, error));
+                    return CompletableFuture.completedFuture(null);
+                }).whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        complete(handle, error);
+                    }
+                });
+            }
+            return handle;
+        }
 
-                        }
-                        catch (Exception e){
-                            e.getStackTrace();
+        try {
+            service.submit(() -> {
+                try {
+                    List<Log> logs = buildBatch(batch, batchSize);
+                    CompletableFuture<Void> written = vectorStore.appendLogAsync(logs);
+                    if (vectorStore instanceof CompositeDatastore) {
+                        // Every sink queued it, their queues bound it from here on
+                        release.run();
+                    }
+                    written.whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            handle.completeExceptionally(error);
+                        } else {
+                            handle.complete(null);
                         }
                     });
+                } catch (Exception e) {
+                    handle.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            recycle(batch);
+            handle.completeExceptionally(e);
+        }
 
+        return handle;
+    }
 
-                }
-                catch(Exception e){
-                    e.getStackTrace();
-                }
+    private static Map<String, List<Log>> splitByKey(List<Log> logs, Function<Log, String> key) {
+        Map<String, List<Log>> lanes = new LinkedHashMap<>();
+        for (Log log : logs) {
+            String laneKey = key.apply(log);
+            lanes.computeIfAbsent(laneKey == null ? "" : laneKey, k -> new ArrayList<>()).add(log);
+        }
+        return lanes;
+    }
+
+    private static void complete(CompletableFuture<Void> handle, Throwable error) {
+        if (error != null) {
+            handle.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+        } else {
+            handle.complete(null);
+        }
+    }
+
+    // Gives the batch's share of the limits back, once, and ships what was deferred waiting for it
+    private void releaseInFlight(AtomicBoolean released, long batchBytes) {
+        if (!released.compareAndSet(false, true)) {
+            return;
+        }
+        inFlightBatches.decrementAndGet();
+        inFlightBytes.addAndGet(-batchBytes);
+        synchronized (queueLock) {
+            if (deferredFlush != null) {
+                flush();
             }
+            // shipRemaining waits for this
+            queueLock.notifyAll();
+        }
+    }
+
+    private boolean tryAcquireInFlight(long batchBytes) {
+        // A single oversized batch is still let through when nothing else is in flight
+        boolean idle = inFlightBatches.get() == 0;
+        if (!idle && (inFlightBatches.get() >= maxInFlightBatches
+                || inFlightBytes.get() + batchBytes > maxInFlightBytes)) {
+            return false;
+        }
+        inFlightBatches.incrementAndGet();
+        inFlightBytes.addAndGet(batchBytes);
+        return true;
+    }
+
+    // The Logs the datastore gets for a swapped out buffer, which is then reused
+    private List<Log> buildBatch(LogBuffer batch, int batchSize) {
+        List<Log> logs = collapseDuplicates
+                ? batch.toCollapsedLogs(project_name, userId)
+                : batch.toLogs(project_name, userId);
+        metrics.recordCollapsed(batchSize - logs.size());
+        recycle(batch);
+        return logs;
+    }
 
+    // Keeps a shipped buffer for the next swap, unless it grew for a burst that is over
+    private void recycle(LogBuffer buffer) {
+        if (buffer.capacity() > MAX_POOLED_BUFFER_CAPACITY && buffer.size() < buffer.capacity() / 4) {
+            return;
+        }
+        buffer.clear();
+        spareBuffer.set(buffer);
+    }
+
+    /**
+     * Bounds the batches, and their estimated bytes, handed to the datastore and not yet
+     * written; appendLog calls over the limit are deferred until a batch is done. With a
+     * {@link CompositeDatastore} a batch only counts until every sink has queued it: each
+     * sink's queue capacity and overflow policy bound it from there, so one slow sink
+     * can't hold back the batches of the others. Defaults to 64 batches and 64 MB.
+     */
+    public void setInFlightLimits(int maxBatches, long maxBytes) {
+        this.maxInFlightBatches = maxBatches;
+        this.maxInFlightBytes = maxBytes;
+    }
+
+    public int getInFlightBatches() {
+        return inFlightBatches.get();
+    }
+
+    public long getInFlightBytes() {
+        return inFlightBytes.get();
+    }
+
+    public long getDeferredFlushes() {
+        return metrics.getDeferredFlushes();
+    }
+
+    public long getFailedBatches() {
+        return metrics.getFailedBatches();
     }
 
     private void flushLogProcessingSet(){
-            logTrackSet.clear();
+            LogBuffer spare = spareBuffer.getAndSet(null);
+            pendingLogs = spare != null ? spare : new LogBuffer(INITIAL_BUFFER_CAPACITY);
+            pendingRecords = 0;
     }
 
-    private void flushLogProcessingQueue() {
-        logsProcessingQueue.clear();
+    /**
+     * Pull-style copy of this logger's counters and histograms, plus those of every
+     * datastore behind it. Cheap enough to poll every few seconds.
+     */
+    public MetricsSnapshot getMetricsSnapshot() {
+        return new MetricsSnapshot(metrics, datastoreMetrics());
     }
 
-    private <T> void put(Collection<T> collection, T item){
-            collection.add(item);
+    private List<DatastoreMetrics> datastoreMetrics() {
+        List<DatastoreMetrics> stores = new ArrayList<>();
+        if (vectorStore.getMetrics() != null) {
+            stores.add(vectorStore.getMetrics());
+        }
+        if (vectorStore instanceof CompositeDatastore) {
+            for (CompositeDatastore.Sink sink : ((CompositeDatastore) vectorStore).getSinks()) {
+                if (sink.getDatastore().getMetrics() != null) {
+                    stores.add(sink.getDatastore().getMetrics());
+                }
+            }
+        }
+        return stores;
+    }
+
+    private void registerMBeans() {
+        loggerMBean = MetricsRegistry.register("Logger", project_name, null, metrics);
+        if (vectorStore instanceof CompositeDatastore) {
+            ((CompositeDatastore) vectorStore).addSinkListener(syncDatastoreMBeans);
+        }
+        syncDatastoreMBeans();
+    }
+
+    // Registers a bean for every datastore that has none yet and drops those of stores that are gone
+    private void syncDatastoreMBeans() {
+        Map<DatastoreMetrics, String> current = new IdentityHashMap<>();
+        if (vectorStore.getMetrics() != null) {
+            current.put(vectorStore.getMetrics(), vectorStore.getMetrics().getName());
+        }
+        if (vectorStore instanceof CompositeDatastore) {
+            for (CompositeDatastore.Sink sink : ((CompositeDatastore) vectorStore).getSinks()) {
+                if (sink.getDatastore().getMetrics() != null) {
+                    // Named after the sink, whose index tells two stores of one class apart
+                    current.putIfAbsent(sink.getDatastore().getMetrics(), sink.getName());
+                }
+            }
+        }
+
+        synchronized (datastoreMBeans) {
+            if (shuttingDown) {
+                return;
+            }
+            Iterator<Map.Entry<DatastoreMetrics, ObjectName>> registered = datastoreMBeans.entrySet().iterator();
+            while (registered.hasNext()) {
+                Map.Entry<DatastoreMetrics, ObjectName> entry = registered.next();
+                if (!current.containsKey(entry.getKey())) {
+                    MetricsRegistry.unregister(entry.getValue());
+                    registered.remove();
+                }
+            }
+            current.forEach((store, name) -> datastoreMBeans.computeIfAbsent(store,
+                    ignored -> MetricsRegistry.register("Datastore", project_name, name, store)));
+        }
+    }
+
+    private void unregisterMBeans() {
+        if (vectorStore instanceof CompositeDatastore) {
+            ((CompositeDatastore) vectorStore).removeSinkListener(syncDatastoreMBeans);
+        }
+        MetricsRegistry.unregister(loggerMBean);
+        loggerMBean = null;
+        synchronized (datastoreMBeans) {
+            datastoreMBeans.values().forEach(MetricsRegistry::unregister);
+            datastoreMBeans.clear();
+        }
+    }
+
+    /**
+     * Names of the MBeans this logger registered, its own first.
+     */
+    public List<ObjectName> getMBeanNames() {
+        List<ObjectName> names = new ArrayList<>();
+        if (loggerMBean != null) {
+            names.add(loggerMBean);
+        }
+        synchronized (datastoreMBeans) {
+            names.addAll(datastoreMBeans.values());
+        }
+        return names;
     }
 
     private void deleteLogs(){
@@ -146,37 +721,49 @@ public class Logger {
     }
 
     public void shutdown() {
-//        try {
-//            if (dataStore instanceof  FileStore) {
-//                ((FileStore) dataStore).fileClose();
-//            }
-//
-//            service.shutdown();
-//            try {
-//                if (!service.awaitTermination(10, TimeUnit.SECONDS)) {
-//                    service.shutdownNow();
-//                }
-//            }
-//            catch (InterruptedException e) {
-//                service.shutdownNow();
-//                Thread.currentThread().interrupt();
-//            }
-//        } catch (Exception e) {
-//            throw new RuntimeException(e);
-//        }
+        shutdown(Duration.ofSeconds(100));
+    }
+
+    /**
+     * Ships whatever is still buffered, then waits up to the deadline for every in-flight
+     * batch to be acknowledged before stopping the executor and closing the datastore.
+     */
+    public void shutdown(Duration deadline) {
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+
+        synchronized (queueLock) {
+            shuttingDown = true;
+        }
 
         try {
-            ThreadPoolExecutor executor = (ThreadPoolExecutor) this.service;
+            shipRemaining(deadlineNanos);
+
+            CompletableFuture<?>[] pending = inFlight.toArray(new CompletableFuture<?>[0]);
+            try {
+                CompletableFuture.allOf(pending).get(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                // Individual failures were already counted and reported by their handles
+            } catch (TimeoutException e) {
+                System.err.println("Shutdown deadline reached with " + inFlight.size() + " batches still in flight");
+            }
+
+            ExecutorService executor = this.service;
             executor.shutdown();
-            boolean isCompleted = executor.awaitTermination(100, TimeUnit.SECONDS);
+            boolean isCompleted = executor.awaitTermination(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS);
             if(!isCompleted) {
+                executor.shutdownNow();
                 throw new RuntimeException("Executor shutdown timed out");
             }
 
-            if (vectorStore instanceof  FileStore) {
-                ((FileStore) vectorStore).fileClose();
+            if (vectorStore instanceof CompositeDatastore) {
+                ((CompositeDatastore) vectorStore).close(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS);
+            } else if (vectorStore instanceof AutoCloseable) {
+                // Files, the vector store's compactor...
+                ((AutoCloseable) vectorStore).close();
             }
 
+            unregisterMBeans();
+
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -185,6 +772,45 @@ public class Logger {
 
     }
 
+    // Flushes, then waits until the batches giving back their in-flight slots shipped the rest
+    private void shipRemaining(long deadlineNanos) throws InterruptedException {
+        synchronized (queueLock) {
+            flush();
+            while (!pendingLogs.isEmpty()) {
+                long remaining = remainingNanos(deadlineNanos);
+                if (remaining == 0) {
+                    System.err.println("Shutdown deadline reached with " + pendingRecords + " logs never shipped");
+                    if (deferredFlush != null) {
+                        deferredFlush.completeExceptionally(new TimeoutException("Logger shut down before the logs were shipped"));
+                        deferredFlush = null;
+                    }
+                    return;
+                }
+                // releaseInFlight flushes under the lock, it can't slip in between
+                TimeUnit.NANOSECONDS.timedWait(queueLock, remaining);
+            }
+        }
+    }
+
+    private static long remainingNanos(long deadlineNanos) {
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    public DispatchMode getDispatchMode() {
+        return dispatchMode;
+    }
+
+    /**
+     * In ORDERED mode, splits each batch by the key of its logs, e.g. a tenant or request
+     * id from the MDC. Logs with the same key are delivered one batch at a time in appendLog
+     * order; different keys are delivered in parallel. Without a key, the default, the
+     * whole project is one lane and its batches are sent strictly one after another.
+     * Ignored in POOLED mode.
+     */
+    public void setOrderingKey(Function<Log, String> orderingKey) {
+        this.orderingKey = orderingKey;
+    }
+
     public Datastore getVectorStore(){
         return this.vectorStore;
     }
@@ -0,0 +1,61 @@
+package logger.service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs tasks one after another per key (a project, or an ordering key within one) and
+ * in parallel across keys.
+ *
+ * Each key keeps only the future of its last task; a new task is chained onto it, so
+ * nothing waits on a thread for its turn. A task is done when the future it returned
+ * is, so an asynchronous write holds its key until the store settled it, even if it
+ * fails or times out; the next task then runs, a failure doesn't stop the key.
+ */
+final class OrderedDispatcher {
+
+    private final Executor executor;
+
+    private final Map<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    OrderedDispatcher(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return completes with the task's future, exceptionally if the task threw.
+     */
+    CompletableFuture<Void> submit(String key, Supplier<CompletableFuture<Void>> task) {
+        AtomicReference<CompletableFuture<Void>> next = new AtomicReference<>();
+        tails.compute(key, (k, tail) -> {
+            CompletableFuture<Void> previous = tail == null ? CompletableFuture.completedFuture(null) : tail;
+            next.set(previous.handle((ignored, error) -> null).thenCompose(ignored -> run(task)));
+            return next.get();
+        });
+        CompletableFuture<Void> submitted = next.get();
+        // Forget keys that went idle, unless another task was chained on meanwhile
+        submitted.whenComplete((ignored, error) -> tails.remove(key, submitted));
+        return submitted;
+    }
+
+    private CompletableFuture<Void> run(Supplier<CompletableFuture<Void>> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor).thenCompose(Function.identity());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Keys with a task queued or running.
+     */
+    int activeKeys() {
+        return tails.size();
+    }
+}
@@ -0,0 +1,96 @@
+package logger.utils;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Set;
+import java.util.UUID;
+
+public class MessageFormatter {
+
+    // Args of these types can't change after the call, so they are kept as they are
+    private static final Set<Class<?>> IMMUTABLE = Set.of(
+            String.class, Integer.class, Long.class, Short.class, Byte.class, Double.class,
+            Float.class, Boolean.class, Character.class, BigInteger.class, BigDecimal.class,
+            UUID.class, Class.class);
+
+    // Fills "{}" placeholders left to right, SLF4J style; "\{}" stays a literal "{}"
+    public static String format(String template, Object[] args) {
+        if (template == null || args == null || args.length == 0) {
+            return template;
+        }
+
+        StringBuilder message = new StringBuilder(template.length() + 16 * args.length);
+        int argIndex = 0;
+        int start = 0;
+        while (true) {
+            int placeholder = template.indexOf("{}", start);
+            if (placeholder < 0 || argIndex >= args.length) {
+                break;
+            }
+            if (placeholder > 0 && template.charAt(placeholder - 1) == '\\') {
+                message.append(template, start, placeholder - 1).append("{}");
+                start = placeholder + 2;
+                continue;
+            }
+            message.append(template, start, placeholder).append(args[argIndex++]);
+            start = placeholder + 2;
+        }
+        message.append(template, start, template.length());
+        return message.toString();
+    }
+
+    /**
+     * Args as they are at the call, for formatting later: any arg that could still change
+     * is replaced by its toString() now. Returns args itself when nothing needed replacing.
+     * Throwables are kept, see {@link #trailingThrowable}.
+     */
+    public static Object[] snapshot(Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        Object[] snapshot = args;
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (arg == null || arg instanceof Enum || arg instanceof Throwable || IMMUTABLE.contains(arg.getClass())) {
+                continue;
+            }
+            if (snapshot == args) {
+                snapshot = args.clone();
+            }
+            snapshot[i] = String.valueOf(arg);
+        }
+        return snapshot;
+    }
+
+    /**
+     * The last arg if it is a Throwable no placeholder uses, as SLF4J treats it; format leaves it out.
+     */
+    public static Throwable trailingThrowable(String template, Object[] args) {
+        if (template == null || args == null || args.length == 0
+                || !(args[args.length - 1] instanceof Throwable)) {
+            return null;
+        }
+        return placeholders(template) < args.length ? (Throwable) args[args.length - 1] : null;
+    }
+
+    public static String stackTrace(Throwable throwable) {
+        StringWriter trace = new StringWriter();
+        throwable.printStackTrace(new PrintWriter(trace));
+        return trace.toString();
+    }
+
+    // "{}" not escaped with a backslash
+    private static int placeholders(String template) {
+        int count = 0;
+        int placeholder = template.indexOf("{}");
+        while (placeholder >= 0) {
+            if (placeholder == 0 || template.charAt(placeholder - 1) != '\\') {
+                count++;
+            }
+            placeholder = template.indexOf("{}", placeholder + 2);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,28 @@
+package logger.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Java 21 version of the Logger's executors: ordered sends get a virtual thread each,
+ * so a project blocked on a slow server costs a few hundred bytes instead of a thread.
+ */
+final class DispatchExecutors {
+
+    private static final int POOL_SIZE = 10;
+
+    private DispatchExecutors() {
+    }
+
+    static ExecutorService pooled() {
+        return Executors.newFixedThreadPool(POOL_SIZE);
+    }
+
+    static ExecutorService ordered() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("plogger-dispatch-", 0).factory());
+    }
+
+    static boolean usesVirtualThreads() {
+        return true;
+    }
+}
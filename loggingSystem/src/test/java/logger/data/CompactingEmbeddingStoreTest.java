@@ -0,0 +1,176 @@
+package logger.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompactingEmbeddingStoreTest {
+
+    private static Embedding vector(float x, float y) {
+        return Embedding.from(new float[]{x, y});
+    }
+
+    private static TextSegment segment(String text, String severity) {
+        return TextSegment.from(text, new Metadata().add("severity", severity));
+    }
+
+    @Test
+    public void deletedEntriesAreHiddenBeforeAndAfterCompaction() {
+        CompactingEmbeddingStore store = new CompactingEmbeddingStore();
+        List<String> ids = store.addAll(
+                List.of(vector(1, 0), vector(0.9f, 0.1f), vector(0, 1)),
+                List.of(segment("a", "HIGH"), segment("b", "LOW"), segment("c", "LOW")),
+                List.of(1000L, 2000L, 3000L));
+
+        store.remove(ids.get(0));
+
+        List<EmbeddingMatch<TextSegment>> matches = store.findRelevant(vector(1, 0), 1, 0.0);
+        assertEquals(1, matches.size());
+        assertEquals(ids.get(1), matches.get(0).embeddingId());
+        assertEquals(1, store.tombstoneCount());
+
+        assertEquals(1, store.compact());
+        assertEquals(0, store.tombstoneCount());
+        assertEquals(2, store.size());
+
+        matches = store.findRelevant(vector(1, 0), 3, 0.0);
+        assertEquals(2, matches.size());
+        assertTrue(matches.stream().noneMatch(m -> m.embeddingId().equals(ids.get(0))));
+    }
+
+    @Test
+    public void removeIfMatchesOnTimestamp() {
+        CompactingEmbeddingStore store = new CompactingEmbeddingStore();
+        store.addAll(
+                List.of(vector(1, 0), vector(0, 1)),
+                List.of(segment("old", "LOW"), segment("new", "LOW")),
+                List.of(1000L, 5000L));
+
+        assertEquals(1, store.removeIf(entry -> entry.getTimestampMillis() < 2000L));
+        store.compact();
+
+        List<EmbeddingMatch<TextSegment>> matches = store.findRelevant(vector(1, 0), 5, 0.0);
+        assertEquals(1, matches.size());
+        assertEquals("new", matches.get(0).embedded().text());
+    }
+
+    @Test
+    public void snapshotRestoresIdsTimestampsAndMetadata() throws Exception {
+        CompactingEmbeddingStore store = new CompactingEmbeddingStore();
+        List<String> ids = store.addAll(
+                List.of(vector(1, 0), vector(0, 1)),
+                List.of(segment("kept", "HIGH"), segment("deleted", "LOW")),
+                List.of(1000L, 2000L));
+        store.remove(ids.get(1));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, store.writeSnapshot(out));
+
+        CompactingEmbeddingStore restored = new CompactingEmbeddingStore();
+        restored.add(vector(0, 1));
+        assertEquals(1, restored.readSnapshot(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(1, restored.size());
+
+        List<EmbeddingMatch<TextSegment>> matches = restored.findRelevant(vector(0, 1), 5, 0.0);
+        assertEquals(1, matches.size());
+        assertEquals(ids.get(0), matches.get(0).embeddingId());
+        assertEquals("HIGH", matches.get(0).embedded().metadata().getString("severity"));
+        assertEquals(1, restored.removeIf(entry -> entry.getTimestampMillis() == 1000L));
+    }
+
+    @Test
+    public void changesHoldOnlyWhatWasAddedSinceTheLastWrite() throws Exception {
+        CompactingEmbeddingStore store = new CompactingEmbeddingStore();
+        // Nothing to write changes against before a snapshot
+        assertEquals(-1, store.writeChanges(new ByteArrayOutputStream()));
+
+        store.addAll(List.of(vector(1, 0)), List.of(segment("a", "LOW")), List.of(1000L));
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        assertEquals(1, store.writeSnapshot(snapshot));
+        store.addAll(List.of(vector(0, 1)), List.of(segment("b", "LOW")), List.of(2000L));
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        assertEquals(1, store.writeChanges(first));
+        store.addAll(List.of(vector(1, 1)), List.of(segment("c", "LOW")), List.of(3000L));
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        assertEquals(1, store.writeChanges(second));
+
+        CompactingEmbeddingStore restored = new CompactingEmbeddingStore();
+        restored.readSnapshot(new ByteArrayInputStream(snapshot.toByteArray()));
+        assertEquals(1, restored.readChanges(new ByteArrayInputStream(first.toByteArray())));
+        assertEquals(1, restored.readChanges(new ByteArrayInputStream(second.toByteArray())));
+        assertEquals(3, restored.size());
+
+        // A removal can't be written as a change, only a snapshot has it
+        store.removeIf(entry -> entry.getTimestampMillis() == 1000L);
+        assertEquals(-1, store.writeChanges(new ByteArrayOutputStream()));
+        store.writeSnapshot(new ByteArrayOutputStream());
+        assertEquals(0, store.writeChanges(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void writesRacingACompactionAreKept() throws Exception {
+        CompactingEmbeddingStore store = new CompactingEmbeddingStore();
+        List<String> first = store.addAll(
+                List.of(vector(1, 0), vector(1, 0.1f), vector(1, 0.2f)),
+                List.of(segment("a", "LOW"), segment("b", "LOW"), segment("c", "LOW")),
+                List.of(1000L, 1000L, 1000L));
+        store.remove(first.get(0));
+
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 200; i++) {
+                List<String> ids = store.addAll(List.of(vector(1, i), vector(i, 1)),
+                        List.of(segment("kept", "LOW"), segment("dropped", "LOW")), List.of(2000L, 2000L));
+                store.remove(ids.get(1));
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            store.compact();
+        }
+        writer.join();
+
+        // Every live entry is found once, no deleted one comes back
+        List<EmbeddingMatch<TextSegment>> matches = store.findRelevant(vector(1, 1), 1000, 0.0);
+        assertEquals(202, store.size());
+        assertEquals(202, matches.size());
+        assertTrue(matches.stream().noneMatch(m -> m.embedded().text().equals("dropped")));
+        store.compact();
+        assertEquals(0, store.tombstoneCount());
+        assertEquals(202, store.findRelevant(vector(1, 1), 1000, 0.0).size());
+    }
+
+    @Test
+    public void searchStillFillsTheResultBehindManyTombstones() {
+        CompactingEmbeddingStore store = new CompactingEmbeddingStore();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        List<Long> timestamps = new ArrayList<>();
+        // 2000 close to the query, all deleted, then 5 live ones further away
+        for (int i = 0; i < 2000; i++) {
+            embeddings.add(vector(1, i * 0.00001f));
+            segments.add(segment("dead", "LOW"));
+            timestamps.add(1000L);
+        }
+        for (int i = 0; i < 5; i++) {
+            embeddings.add(vector(1, 1 + i));
+            segments.add(segment("live", "LOW"));
+            timestamps.add(2000L);
+        }
+        store.addAll(embeddings, segments, timestamps);
+        assertEquals(2000, store.removeIf(entry -> entry.getTimestampMillis() == 1000L));
+
+        List<EmbeddingMatch<TextSegment>> matches = store.findRelevant(vector(1, 0), 5, 0.0);
+        assertEquals(5, matches.size());
+        assertTrue(matches.stream().allMatch(m -> m.embedded().text().equals("live")));
+    }
+}
@@ -0,0 +1,176 @@
+package logger.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import logger.enums.FailurePolicy;
+import logger.enums.OverflowPolicy;
+import logger.enums.Severity;
+import logger.pojo.Log;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CompositeDatastoreTest {
+
+    /**
+     * Records what it is given; fails the first failures writes and waits for the gate, if any.
+     */
+    private static class RecordingStore implements Datastore, AutoCloseable {
+        final List<String> written = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger attempts = new AtomicInteger();
+        final CountDownLatch gate;
+        final CountDownLatch writing = new CountDownLatch(1);
+        volatile int failures;
+        volatile boolean closed;
+
+        RecordingStore() {
+            this(null, 0);
+        }
+
+        RecordingStore(CountDownLatch gate, int failures) {
+            this.gate = gate;
+            this.failures = failures;
+        }
+
+        @Override
+        public void addLog(Log log) {
+        }
+
+        @Override
+        public void appendLog(Collection<Log> logCollection) {
+            writing.countDown();
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (attempts.incrementAndGet() <= failures) {
+                throw new RuntimeException("sink down");
+            }
+            for (Log log : logCollection) {
+                written.add(log.getData());
+            }
+        }
+
+        @Override
+        public void deleteLog() {
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static List<Log> batch(String... messages) {
+        List<Log> logs = new ArrayList<>();
+        for (String message : messages) {
+            logs.add(new Log(message, Severity.LOW));
+        }
+        return logs;
+    }
+
+    @Test
+    public void everySinkGetsEveryBatchAndIsClosed() throws Exception {
+        RecordingStore first = new RecordingStore();
+        RecordingStore second = new RecordingStore();
+        CompositeDatastore composite = new CompositeDatastore().addSink(first).addSink(second);
+
+        composite.appendLogAsync(batch("a", "b")).get(5, TimeUnit.SECONDS);
+        composite.appendLogAsync(batch("c")).get(5, TimeUnit.SECONDS);
+        composite.close(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("a", "b", "c"), first.written);
+        assertEquals(List.of("a", "b", "c"), second.written);
+        assertTrue(first.closed && second.closed);
+        assertThrows(IllegalStateException.class, () -> composite.appendLogAsync(batch("d")));
+    }
+
+    @Test
+    public void closeWritesEverythingQueuedBeforeIt() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        RecordingStore slow = new RecordingStore(gate, 0);
+        CompositeDatastore composite = new CompositeDatastore()
+                .addSink(slow, 100, OverflowPolicy.BLOCK, FailurePolicy.DROP);
+
+        List<CompletableFuture<Void>> handles = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            handles.add(composite.appendLogAsync(batch("m" + i)));
+        }
+        gate.countDown();
+        composite.close(5, TimeUnit.SECONDS);
+
+        for (CompletableFuture<Void> handle : handles) {
+            assertTrue(handle.isDone() && !handle.isCompletedExceptionally());
+        }
+        assertEquals(50, slow.written.size());
+    }
+
+    @Test
+    public void retryPolicyWritesAfterTransientFailures() throws Exception {
+        RecordingStore flaky = new RecordingStore(null, 2);
+        CompositeDatastore composite = new CompositeDatastore()
+                .addSink(flaky, 10, OverflowPolicy.DROP_NEWEST, FailurePolicy.RETRY);
+
+        composite.appendLogAsync(batch("a")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(3, flaky.attempts.get());
+        assertEquals(List.of("a"), flaky.written);
+        assertEquals(0, composite.getSinks().get(0).getFailedBatches());
+        composite.close(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void dropPolicyFailsTheBatchWithoutHoldingBackOtherSinks() throws Exception {
+        RecordingStore broken = new RecordingStore(null, 1);
+        RecordingStore healthy = new RecordingStore();
+        CompositeDatastore composite = new CompositeDatastore()
+                .addSink(broken, 10, OverflowPolicy.DROP_NEWEST, FailurePolicy.DROP)
+                .addSink(healthy);
+
+        CompletableFuture<Void> handle = composite.appendLogAsync(batch("a"));
+        assertThrows(ExecutionException.class, () -> handle.get(5, TimeUnit.SECONDS));
+
+        assertEquals(1, broken.attempts.get());
+        assertEquals(1, composite.getSinks().get(0).getFailedBatches());
+        assertEquals(List.of("a"), healthy.written);
+        composite.close(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void overflowPoliciesPickWhichBatchIsDropped() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        RecordingStore newest = new RecordingStore(gate, 0);
+        RecordingStore oldest = new RecordingStore(gate, 0);
+        CompositeDatastore composite = new CompositeDatastore()
+                .addSink(newest, 2, OverflowPolicy.DROP_NEWEST, FailurePolicy.DROP)
+                .addSink(oldest, 2, OverflowPolicy.DROP_OLDEST, FailurePolicy.DROP);
+
+        // The first batch is taken by both workers, which then wait on the gate
+        composite.appendLogAsync(batch("0"));
+        newest.writing.await(5, TimeUnit.SECONDS);
+        oldest.writing.await(5, TimeUnit.SECONDS);
+        for (int i = 1; i <= 4; i++) {
+            composite.appendLogAsync(batch(Integer.toString(i)));
+        }
+        gate.countDown();
+        composite.close(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("0", "1", "2"), newest.written);
+        assertEquals(List.of("0", "3", "4"), oldest.written);
+        assertEquals(2, composite.getSinks().get(0).getDroppedBatches());
+        assertEquals(2, composite.getSinks().get(1).getDroppedBatches());
+    }
+}
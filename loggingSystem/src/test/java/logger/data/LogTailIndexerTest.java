@@ -0,0 +1,174 @@
+package logger.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import logger.enums.Severity;
+import logger.pojo.Log;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class LogTailIndexerTest {
+
+    private static final Pattern MESSAGE = Pattern.compile("Message: (\\S+?)\\.");
+
+    @TempDir
+    File temp;
+
+    // Filled in like the Logger does, the vector store needs the thread and the timestamp
+    private static Log log(String message) {
+        Log log = new Log(message, Severity.LOW);
+        log.setThreadId("1");
+        log.setThreadName("main");
+        log.setTimestamp(new Timestamp(System.currentTimeMillis()));
+        return log;
+    }
+
+    private static List<Log> batch(int from, int to) {
+        List<Log> logs = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            logs.add(log("m" + i));
+        }
+        return logs;
+    }
+
+    private static List<String> expected(int count) {
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add("m" + i);
+        }
+        Collections.sort(messages);
+        return messages;
+    }
+
+    // The message of every log in the store, sorted, duplicates included
+    private static List<String> indexed(VectorStoreDatastore store) {
+        List<String> messages = new ArrayList<>();
+        ((CompactingEmbeddingStore) store.getEmbeddingStore()).removeIf(entry -> {
+            Matcher matcher = MESSAGE.matcher(entry.getSegment().text());
+            assertTrue(matcher.find());
+            messages.add(matcher.group(1));
+            return false;
+        });
+        Collections.sort(messages);
+        return messages;
+    }
+
+    private static File onlySegment(File directory) {
+        File[] segments = directory.listFiles((dir, name) -> name.endsWith(".log"));
+        assertEquals(1, segments.length);
+        return segments[0];
+    }
+
+    @Test
+    public void restartsFromTheCheckpointWithoutLosingOrRepeatingRecords() throws Exception {
+        File logs = new File(temp, "logs");
+        File state = new File(temp, "state");
+        FileStore fileStore = new FileStore(logs);
+        fileStore.appendLog(batch(0, 5));
+        fileStore.appendLog(batch(5, 10));
+        fileStore.appendLog(batch(10, 15));
+
+        try (VectorStoreDatastore store = new VectorStoreDatastore()) {
+            LogTailIndexer indexer = new LogTailIndexer(logs, store, state, 4);
+            assertEquals(15, indexer.indexNewRecords());
+
+            fileStore.appendLog(batch(15, 20));
+            fileStore.appendLog(batch(20, 25));
+            assertEquals(10, indexer.indexNewRecords());
+            assertEquals(0, indexer.indexNewRecords());
+            indexer.close();
+        }
+
+        // The second pass only wrote what it added
+        String[] deltas = state.list((dir, name) -> name.startsWith("delta-"));
+        assertEquals(1, deltas.length);
+
+        try (VectorStoreDatastore store = new VectorStoreDatastore()) {
+            LogTailIndexer indexer = new LogTailIndexer(logs, store, state, 4);
+            assertEquals(25, indexer.getRestoredRecords());
+            assertEquals(0, indexer.indexNewRecords());
+
+            fileStore.appendLog(batch(25, 30));
+            assertEquals(5, indexer.indexNewRecords());
+            assertEquals(expected(30), indexed(store));
+            indexer.close();
+        }
+        fileStore.close();
+    }
+
+    @Test
+    public void batchCutShortIsReadAgainFromItsStart() throws Exception {
+        File written = new File(temp, "written");
+        FileStore fileStore = new FileStore(written);
+        fileStore.appendLog(batch(0, 5));
+        File source = onlySegment(written);
+        long firstBatchEnd = source.length();
+        fileStore.appendLog(batch(5, 10));
+        fileStore.close();
+        byte[] bytes = Files.readAllBytes(source.toPath());
+
+        // The FileStore got halfway through writing the second batch
+        File logs = new File(temp, "logs");
+        logs.mkdirs();
+        File segment = new File(logs, source.getName());
+        int cut = (int) (firstBatchEnd + (bytes.length - firstBatchEnd) / 2);
+        Files.write(segment.toPath(), Arrays.copyOfRange(bytes, 0, cut));
+
+        try (VectorStoreDatastore store = new VectorStoreDatastore()) {
+            LogTailIndexer indexer = new LogTailIndexer(logs, store, new File(temp, "state"), 2);
+            int first = indexer.indexNewRecords();
+            assertTrue(first >= 5 && first < 10);
+
+            Files.write(segment.toPath(), Arrays.copyOfRange(bytes, cut, bytes.length), StandardOpenOption.APPEND);
+            assertEquals(10 - first, indexer.indexNewRecords());
+            assertEquals(expected(10), indexed(store));
+            assertEquals(0, indexer.getSkippedRecords());
+            indexer.close();
+        }
+    }
+
+    @Test
+    public void unreadableRecordsAreSkippedAndCounted() throws Exception {
+        File logs = new File(temp, "logs");
+        File state = new File(temp, "state");
+        logs.mkdirs();
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(new File(logs, "1.log")))) {
+            out.reset();
+            out.writeObject(log("m0"));
+            out.writeObject("not a log");
+            out.writeObject(log("m1"));
+        }
+
+        try (VectorStoreDatastore store = new VectorStoreDatastore()) {
+            LogTailIndexer indexer = new LogTailIndexer(logs, store, state);
+            assertEquals(2, indexer.indexNewRecords());
+            assertEquals(1, indexer.getSkippedRecords());
+            assertEquals(1, indexer.getMetrics().getBatchesFailed());
+            assertEquals(expected(2), indexed(store));
+            indexer.close();
+        }
+
+        // The skip was committed with the offsets, it isn't read again
+        try (VectorStoreDatastore store = new VectorStoreDatastore()) {
+            LogTailIndexer indexer = new LogTailIndexer(logs, store, state);
+            assertEquals(2, indexer.getRestoredRecords());
+            assertEquals(0, indexer.indexNewRecords());
+            assertEquals(0, indexer.getSkippedRecords());
+            indexer.close();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package logger.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import logger.enums.Severity;
+import logger.pojo.Log;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NetworkDataStoreTest {
+
+    private HttpServer server;
+
+    @AfterEach
+    public void stopServer() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    // Answers 202 to every ingest request and counts the requests
+    private String startServer(AtomicInteger requests) throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/logs/ingest", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(202, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    // Answers 202 after a fixed 5 ms plus 1 ms per 50 logs in the request
+    private String startSizeBoundServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/logs/ingest", exchange -> {
+            int records;
+            try (InputStream body = exchange.getRequestBody()) {
+                records = JsonParser.parseString(new String(body.readAllBytes(), StandardCharsets.UTF_8))
+                        .getAsJsonArray().size();
+            }
+            try {
+                Thread.sleep(5 + records / 50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(202, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newFixedThreadPool(32));
+        server.start();
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static List<Log> batch(int size) {
+        List<Log> logs = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            logs.add(new Log("message " + i, Severity.LOW));
+        }
+        return logs;
+    }
+
+    @Test
+    public void everyQueuedBatchIsAcknowledged() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        networkDataStore store = new networkDataStore(startServer(requests));
+
+        List<CompletableFuture<Void>> handles = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            handles.add(store.appendLogAsync(batch(10)));
+        }
+        CompletableFuture.allOf(handles.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+        store.appendLog(batch(1));
+        store.close();
+
+        assertEquals(5001, store.getMetrics().getRecordsWritten());
+        // Batches that queued behind the concurrency limit shared requests
+        assertTrue(requests.get() <= 501);
+        assertEquals(501 - requests.get(), store.getCoalescedBatches());
+        assertTrue(store.appendLogAsync(batch(1)).isCompletedExceptionally());
+    }
+
+    @Test
+    public void largerRequestsTakingLongerIsNotCongestion() throws Exception {
+        networkDataStore store = new networkDataStore(startSizeBoundServer(), 32, 500);
+
+        // The best round trip seen is a one-log request's
+        for (int i = 0; i < 5; i++) {
+            store.appendLog(batch(1));
+        }
+        // Three times as slow, but only because they're bigger; no errors, no queueing
+        List<CompletableFuture<Void>> handles = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            handles.add(store.appendLogAsync(batch(500)));
+        }
+        CompletableFuture.allOf(handles.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+        store.close();
+
+        assertEquals(0, store.getLimitDecreases());
+        assertTrue(store.getConcurrencyLimit() > 4);
+    }
+
+    @Test
+    public void aHungRequestTimesOutAndFreesItsSlot() throws Exception {
+        CountDownLatch hang = new CountDownLatch(1);
+        AtomicInteger requests = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/logs/ingest", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            if (requests.incrementAndGet() == 1) {
+                try {
+                    hang.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.sendResponseHeaders(202, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+        networkDataStore store = new networkDataStore("http://127.0.0.1:" + server.getAddress().getPort());
+        store.setRequestTimeout(Duration.ofMillis(200));
+
+        try {
+            CompletableFuture<Void> hung = store.appendLogAsync(batch(1));
+            ExecutionException error = assertThrows(ExecutionException.class, () -> hung.get(5, TimeUnit.SECONDS));
+            assertTrue(error.getCause() instanceof HttpTimeoutException, error.getCause().toString());
+
+            store.appendLogAsync(batch(1)).get(5, TimeUnit.SECONDS);
+            // The slot is given back right after the batch completes
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (store.getInFlightRequests() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(0, store.getInFlightRequests());
+        } finally {
+            hang.countDown();
+            store.close();
+        }
+    }
+
+    @Test
+    public void anUnreachableServerFailsEveryBatch() throws Exception {
+        int port;
+        try (ServerSocket unused = new ServerSocket(0)) {
+            port = unused.getLocalPort();
+        }
+        networkDataStore store = new networkDataStore("http://127.0.0.1:" + port);
+
+        // Each failure frees a slot for the next request, however many are queued
+        List<CompletableFuture<Void>> handles = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            handles.add(store.appendLogAsync(batch(1)));
+        }
+        for (CompletableFuture<Void> handle : handles) {
+            assertThrows(ExecutionException.class, () -> handle.get(30, TimeUnit.SECONDS));
+        }
+        store.close();
+        assertEquals(0, store.getInFlightRequests());
+    }
+}
@@ -0,0 +1,128 @@
+package logger.logback;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import logger.data.Datastore;
+import logger.enums.Severity;
+import logger.pojo.Log;
+import logger.service.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class PLoggerAppenderTest {
+
+    private static class RecordingStore implements Datastore {
+        final List<Log> written = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void addLog(Log log) {
+        }
+
+        @Override
+        public void appendLog(Collection<Log> logCollection) {
+            written.addAll(logCollection);
+        }
+
+        @Override
+        public void deleteLog() {
+        }
+    }
+
+    private final LoggerContext context = new LoggerContext();
+    private final RecordingStore store = new RecordingStore();
+    private PLoggerAppender appender;
+
+    @BeforeEach
+    public void startAppender() {
+        // Events read the MDC through the context, as they do behind LoggerFactory
+        context.setMDCAdapter(new LogbackMDCAdapter());
+        appender = new PLoggerAppender();
+        appender.setContext(context);
+        appender.setUserId("u");
+        appender.setProjectName("appender-test");
+        appender.setDatastore(store);
+        appender.start();
+    }
+
+    @AfterEach
+    public void stopAppender() {
+        appender.stop();
+        Logger.resetInstance();
+    }
+
+    private LoggingEvent event(Level level, String message, Throwable throwable, Object... args) {
+        ch.qos.logback.classic.Logger source = context.getLogger("com.acme.PaymentService");
+        return new LoggingEvent(ch.qos.logback.classic.Logger.class.getName(), source, level, message, throwable, args);
+    }
+
+    private List<Log> shipped() throws Exception {
+        Logger.getInstance("u", "appender-test").appendLog().get(5, TimeUnit.SECONDS);
+        return store.written;
+    }
+
+    @Test
+    public void levelsMapToSeverities() {
+        assertEquals(Severity.HIGH, PLoggerAppender.toSeverity(Level.ERROR));
+        assertEquals(Severity.WARN, PLoggerAppender.toSeverity(Level.WARN));
+        assertEquals(Severity.LOW, PLoggerAppender.toSeverity(Level.INFO));
+        assertEquals(Severity.LOW, PLoggerAppender.toSeverity(Level.DEBUG));
+        assertEquals(Severity.LOW, PLoggerAppender.toSeverity(Level.TRACE));
+    }
+
+    @Test
+    public void eventsReachTheConfiguredDatastoreWithTheLoggerName() throws Exception {
+        appender.doAppend(event(Level.DEBUG, "charged {}", null, 42));
+
+        List<Log> logs = shipped();
+        assertEquals(1, logs.size());
+        Log log = logs.get(0);
+        assertEquals("charged 42", log.getData());
+        assertEquals(Severity.LOW, log.getSeverity());
+        assertEquals(Map.of("logger", "com.acme.PaymentService"), log.getMdc());
+        assertNull(log.getStackTrace());
+    }
+
+    @Test
+    public void mdcIsCopiedAlongsideTheLoggerName() throws Exception {
+        LoggingEvent event = event(Level.INFO, "with context", null);
+        event.setMDCPropertyMap(Map.of("requestId", "r-1"));
+        appender.doAppend(event);
+
+        Log log = shipped().get(0);
+        assertEquals(Map.of("requestId", "r-1", "logger", "com.acme.PaymentService"), log.getMdc());
+    }
+
+    @Test
+    public void timestampKeepsTheMicrosecondsLogbackRecorded() throws Exception {
+        LoggingEvent event = event(Level.INFO, "timed", null);
+        Instant instant = Instant.ofEpochSecond(1_700_000_000L, 123_456_000);
+        event.setInstant(instant);
+        appender.doAppend(event);
+
+        assertEquals(instant, shipped().get(0).getTimestamp().toInstant());
+    }
+
+    @Test
+    public void throwableBecomesTheStackTrace() throws Exception {
+        appender.doAppend(event(Level.ERROR, "payment failed", new IllegalStateException("card declined")));
+
+        Log log = shipped().get(0);
+        assertEquals(Severity.HIGH, log.getSeverity());
+        assertTrue(log.getStackTrace().contains("IllegalStateException: card declined"), log.getStackTrace());
+    }
+}
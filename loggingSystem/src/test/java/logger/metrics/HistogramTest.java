@@ -0,0 +1,41 @@
+package logger.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+public class HistogramTest {
+
+    @Test
+    public void everyValueFallsInsideItsBucket() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123_456_789L, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = Histogram.bucketIndex(value);
+            assertTrue(Histogram.bucketUpperBound(index) >= value, "upper bound below " + value);
+            if (index > 0) {
+                assertTrue(Histogram.bucketUpperBound(index - 1) < value, "previous bucket covers " + value);
+            }
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        Map<String, Long> snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.get("count"));
+        assertEquals(500, snapshot.get("mean"));
+        assertEquals(1000, snapshot.get("max"));
+
+        long p50 = snapshot.get("p50");
+        assertTrue(p50 >= 500 && p50 <= 500 * 1.13, "p50 was " + p50);
+        long p99 = snapshot.get("p99");
+        assertTrue(p99 >= 990 && p99 <= 1000, "p99 was " + p99);
+    }
+}
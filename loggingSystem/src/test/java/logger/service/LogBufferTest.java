@@ -0,0 +1,127 @@
+package logger.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import logger.enums.Severity;
+import logger.pojo.Log;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+public class LogBufferTest {
+
+    @Test
+    public void logsComeBackInOrderWithTheirFields() {
+        LogBuffer buffer = new LogBuffer(1);
+        StackTraceElement[] stack = {new StackTraceElement("com.acme.Orders", "place", "Orders.java", 42)};
+
+        for (int i = 0; i < 100; i++) {
+            buffer.add(1_700_000_000_123_456L + i, 7, "worker-1", Severity.WARN, 0.5,
+                    null, "order {} failed", new Object[]{i}, stack, null);
+        }
+        buffer.add(1_700_000_000_000_000L, LogBuffer.UNKNOWN_THREAD_ID, "async", Severity.HIGH, 1.0,
+                "captured", null, null, "\tatsomewhere\n", null);
+
+        List<Log> logs = buffer.toLogs("PaymentService", "user-1");
+        assertEquals(101, logs.size());
+
+        Log first = logs.get(0);
+        assertEquals("order 0 failed", first.getData());
+        assertEquals(Severity.WARN, first.getSeverity());
+        assertEquals("7", first.getThreadId());
+        assertEquals("worker-1", first.getThreadName());
+        assertEquals("\tatcom.acme.Orders.place(Orders.java:42)\n", first.getStackTrace());
+        assertEquals(0.5, first.getSamplingRate());
+        assertEquals("PaymentService", first.getProject_name());
+        assertEquals("user-1", first.getUser_Id());
+        assertEquals(123_456_000, first.getTimestamp().getNanos());
+
+        Log last = logs.get(100);
+        assertEquals("captured", last.getData());
+        assertEquals("unknown", last.getThreadId());
+        assertEquals("\tatsomewhere\n", last.getStackTrace());
+    }
+
+    @Test
+    public void duplicatesFromOneCallSiteAreCollapsed() {
+        LogBuffer buffer = new LogBuffer(16);
+        StackTraceElement[] retryLoop = {
+                new StackTraceElement("logger.service.Logger", "addLog", "Logger.java", 1),
+                new StackTraceElement("com.acme.Client", "retry", "Client.java", 10)};
+        StackTraceElement[] elsewhere = {
+                new StackTraceElement("logger.service.Logger", "addLog", "Logger.java", 1),
+                new StackTraceElement("com.acme.Client", "connect", "Client.java", 20)};
+
+        buffer.add(1_000_000L, 1, "t", Severity.WARN, 1.0, "retrying", null, null, retryLoop, null);
+        buffer.add(2_000_000L, 1, "t", Severity.WARN, 0.5, null, "retrying", null, retryLoop, null);
+        buffer.add(3_000_000L, 1, "t", Severity.WARN, 0.5, "retrying", null, null, retryLoop, null);
+        buffer.add(4_000_000L, 1, "t", Severity.WARN, 1.0, "retrying", null, null, elsewhere, null);
+        buffer.add(5_000_000L, 1, "t", Severity.HIGH, 1.0, "retrying", null, null, retryLoop, null);
+
+        List<Log> logs = buffer.toCollapsedLogs("p", "u");
+        assertEquals(3, logs.size());
+
+        Log collapsed = logs.get(0);
+        assertEquals(3, collapsed.getRepeatCount());
+        assertEquals(LogBuffer.toTimestamp(1_000_000L), collapsed.getFirstSeen());
+        assertEquals(LogBuffer.toTimestamp(3_000_000L), collapsed.getLastSeen());
+        // 1 + 2 + 2 logs before sampling, shipped as 3
+        assertEquals(5.0, collapsed.getRepeatCount() / collapsed.getSamplingRate(), 1e-9);
+
+        assertEquals(1, logs.get(1).getRepeatCount());
+        assertNull(logs.get(1).getFirstSeen());
+        assertEquals(Severity.HIGH, logs.get(2).getSeverity());
+    }
+
+    @Test
+    public void bridgedLogsFromDifferentLoggersAreNotCollapsed() {
+        LogBuffer buffer = new LogBuffer(16);
+        // What the appender adds without caller data: no stack, the logger name in the MDC
+        Map<String, String> orders = Map.of("logger", "com.acme.Orders", "requestId", "r1");
+        Map<String, String> payments = Map.of("logger", "com.acme.Payments", "requestId", "r1");
+        Map<String, String> otherRequest = Map.of("logger", "com.acme.Orders", "requestId", "r2");
+
+        buffer.add(1_000_000L, 1, "t", Severity.WARN, 1.0, "timed out", null, null, null, orders);
+        buffer.add(2_000_000L, 1, "t", Severity.WARN, 1.0, "timed out", null, null, null, payments);
+        buffer.add(3_000_000L, 1, "t", Severity.WARN, 1.0, "timed out", null, null, null, otherRequest);
+        buffer.add(4_000_000L, 1, "t", Severity.WARN, 1.0, "timed out", null, null, null, orders);
+
+        List<Log> logs = buffer.toCollapsedLogs("p", "u");
+        assertEquals(3, logs.size());
+        assertEquals(orders, logs.get(0).getMdc());
+        assertEquals(2, logs.get(0).getRepeatCount());
+        assertEquals(payments, logs.get(1).getMdc());
+        assertEquals(otherRequest, logs.get(2).getMdc());
+    }
+
+    @Test
+    public void clearKeepsCapacityForReuse() {
+        LogBuffer buffer = new LogBuffer(16);
+        for (int i = 0; i < 1000; i++) {
+            buffer.add(i, 1, "t", Severity.LOW, 1.0, "m" + i, null, null, null, null);
+        }
+        int capacity = buffer.capacity();
+        assertTrue(buffer.estimatedBytes() > 0);
+
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.estimatedBytes());
+        assertEquals(capacity, buffer.capacity());
+        assertTrue(buffer.toLogs("p", "u").isEmpty());
+    }
+
+    @Test
+    public void timestampsRoundTripAtMicrosecondPrecision() {
+        Timestamp timestamp = Timestamp.valueOf("2024-03-01 12:30:45.123456");
+        long micros = LogBuffer.toEpochMicros(timestamp);
+        assertEquals(timestamp, LogBuffer.toTimestamp(micros));
+
+        assertEquals(42, LogBuffer.parseThreadId("42"));
+        assertEquals(LogBuffer.UNKNOWN_THREAD_ID, LogBuffer.parseThreadId("unknown"));
+        assertEquals(LogBuffer.UNKNOWN_THREAD_ID, LogBuffer.parseThreadId(null));
+    }
+}
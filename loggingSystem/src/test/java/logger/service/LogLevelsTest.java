@@ -0,0 +1,49 @@
+package logger.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import logger.enums.Severity;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMX;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+public class LogLevelsTest {
+
+    @Test
+    public void everythingIsLoggedUntilAThresholdIsSet() {
+        LogLevels.Threshold threshold = LogLevels.thresholdFor("levels-default-test");
+
+        for (Severity severity : Severity.values()) {
+            assertTrue(threshold.isEnabled(severity));
+        }
+    }
+
+    @Test
+    public void aNewThresholdReachesTheInstanceLoggersHold() {
+        LogLevels.Threshold threshold = LogLevels.thresholdFor("levels-change-test");
+
+        LogLevels.setThreshold("levels-change-test", Severity.WARN);
+
+        assertSame(threshold, LogLevels.thresholdFor("levels-change-test"));
+        assertFalse(threshold.isEnabled(Severity.LOW));
+        assertTrue(threshold.isEnabled(Severity.WARN));
+        assertTrue(threshold.isEnabled(Severity.CRITICAL));
+    }
+
+    @Test
+    public void thresholdsCanBeChangedThroughTheMBean() throws Exception {
+        LogLevels.Threshold threshold = LogLevels.thresholdFor("levels-jmx-test");
+        LogLevelsMXBean mbean = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+                new ObjectName("logger:type=LogLevels"), LogLevelsMXBean.class);
+
+        mbean.setThreshold("levels-jmx-test", " high ");
+
+        assertEquals(Severity.HIGH, threshold.get());
+        assertEquals("HIGH", mbean.getThresholds().get("levels-jmx-test"));
+    }
+}
@@ -0,0 +1,79 @@
+package logger.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import logger.enums.Severity;
+import org.junit.jupiter.api.Test;
+
+public class LogSamplerTest {
+
+    @Test
+    public void callSiteBucketStopsAHotLoop() {
+        LogSampler sampler = new LogSampler().limitCallSites(1, 10);
+
+        int kept = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (sampler.sample(Severity.LOW, "Hot#loop:1", 0) > 0) {
+                kept++;
+            }
+        }
+        assertEquals(10, kept);
+
+        // A different call site has its own budget
+        assertEquals(1.0, sampler.sample(Severity.LOW, "Other#method:2", 0));
+    }
+
+    @Test
+    public void bucketDropsLowerTheRateOfLogsItKeeps() {
+        LogSampler.TokenBucket bucket = new LogSampler.TokenBucket(1, 10);
+        long start = System.nanoTime();
+
+        int kept = 0;
+        for (int i = 0; i < 100; i++) {
+            if (bucket.tryAcquire(start)) {
+                kept++;
+            }
+        }
+        assertEquals(10, kept);
+        assertEquals(1.0, bucket.admitRatio());
+
+        // The next second's logs stand for ten each
+        assertTrue(bucket.tryAcquire(start + 1_000_000_000L));
+        assertEquals(0.1, bucket.admitRatio(), 1e-9);
+    }
+
+    @Test
+    public void criticalAndHighAreAlwaysKept() {
+        LogSampler sampler = new LogSampler()
+                .limitSeverity(Severity.CRITICAL, 1, 1)
+                .limitCallSites(1, 1)
+                .adaptiveSampling(10, 0.0, 0.0);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(1.0, sampler.sample(Severity.CRITICAL, "Hot#loop:1", 10));
+            assertEquals(1.0, sampler.sample(Severity.HIGH, "Hot#loop:1", 10));
+        }
+    }
+
+    @Test
+    public void samplingRateTightensAsTheBufferFills() {
+        LogSampler sampler = new LogSampler().adaptiveSampling(1000, 0.5, 0.01);
+
+        assertEquals(1.0, sampler.samplingRate(0));
+        assertEquals(1.0, sampler.samplingRate(500));
+        assertEquals(0.505, sampler.samplingRate(750), 1e-9);
+        assertEquals(0.01, sampler.samplingRate(1000), 1e-9);
+        assertEquals(0.01, sampler.samplingRate(5000), 1e-9);
+    }
+
+    @Test
+    public void keptLogsCarryTheirRate() {
+        LogSampler sampler = new LogSampler().adaptiveSampling(1000, 0.5, 0.01);
+
+        for (int i = 0; i < 200; i++) {
+            double rate = sampler.sample(Severity.LOW, null, 750);
+            assertTrue(rate == 0 || Math.abs(rate - 0.505) < 1e-9, "unexpected rate " + rate);
+        }
+    }
+}
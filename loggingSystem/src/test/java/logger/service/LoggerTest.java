@@ -0,0 +1,318 @@
+package logger.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import logger.data.CompositeDatastore;
+import logger.data.Datastore;
+import logger.enums.DispatchMode;
+import logger.enums.Severity;
+import logger.metrics.DatastoreMetrics;
+import logger.pojo.Log;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class LoggerTest {
+
+    @AfterEach
+    public void resetLogger() {
+        Logger.resetInstance();
+    }
+
+    // Holds every write until released
+    private static class GatedStore implements Datastore {
+        final List<String> written = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        @Override
+        public void addLog(Log log) {
+        }
+
+        @Override
+        public void appendLog(Collection<Log> logCollection) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Log log : logCollection) {
+                written.add(log.getData());
+            }
+        }
+
+        @Override
+        public void deleteLog() {
+        }
+    }
+
+    // Records metrics under its class name, like the real stores
+    private static class MeteredStore implements Datastore {
+        final DatastoreMetrics metrics = new DatastoreMetrics("MeteredStore");
+
+        @Override
+        public void addLog(Log log) {
+        }
+
+        @Override
+        public void appendLog(Collection<Log> logCollection) {
+        }
+
+        @Override
+        public void deleteLog() {
+        }
+
+        @Override
+        public DatastoreMetrics getMetrics() {
+            return metrics;
+        }
+    }
+
+    @Test
+    public void everySinkGetsItsOwnMBeanIncludingSinksAddedLater() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        CompositeDatastore composite = new CompositeDatastore()
+                .addSink(new MeteredStore())
+                .addSink(new MeteredStore());
+        Logger logger = Logger.getInstance("u", "mbean-test", composite);
+
+        // The composite's own bean and one per sink, two of the same class included
+        assertEquals(4, logger.getMBeanNames().size());
+        composite.addSink(new MeteredStore());
+        List<ObjectName> names = logger.getMBeanNames();
+        assertEquals(5, names.size());
+        for (ObjectName name : names) {
+            assertTrue(server.isRegistered(name));
+        }
+
+        Logger.resetInstance();
+        for (ObjectName name : names) {
+            assertFalse(server.isRegistered(name));
+        }
+    }
+
+    // Holds back the batches of one tenant until released
+    private static class TenantStore implements Datastore {
+        final List<String> written = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch slowTenant = new CountDownLatch(1);
+
+        @Override
+        public void addLog(Log log) {
+        }
+
+        @Override
+        public void appendLog(Collection<Log> logCollection) {
+            for (Log log : logCollection) {
+                if (log.getMdc().get("tenant").equals("slow")) {
+                    try {
+                        slowTenant.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                written.add(log.getData());
+            }
+        }
+
+        @Override
+        public void deleteLog() {
+        }
+    }
+
+    private static Log tenantLog(String message, String tenant) {
+        Log log = new Log(message, Severity.LOW);
+        log.setMdc(Map.of("tenant", tenant));
+        return log;
+    }
+
+    @Test
+    public void orderedLanesFollowTheOrderingKey() throws Exception {
+        TenantStore store = new TenantStore();
+        Logger logger = Logger.getInstance("u", "ordering-key-test", store, DispatchMode.ORDERED);
+        logger.setOrderingKey(log -> log.getMdc().get("tenant"));
+
+        logger.addLog(tenantLog("slow-1", "slow"));
+        logger.addLog(tenantLog("fast-1", "fast"));
+        CompletableFuture<Void> first = logger.appendLog();
+        logger.addLog(tenantLog("fast-2", "fast"));
+        logger.addLog(tenantLog("slow-2", "slow"));
+        CompletableFuture<Void> second = logger.appendLog();
+
+        // One tenant stuck behind a slow write doesn't hold back the other
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (store.written.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(List.of("fast-1", "fast-2"), store.written);
+        assertFalse(first.isDone());
+
+        store.slowTenant.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("fast-1", "fast-2", "slow-1", "slow-2"), store.written);
+    }
+
+    @Test
+    public void orderedBatchCompletesOnceTheCompositeWroteIt() throws Exception {
+        GatedStore store = new GatedStore();
+        CompositeDatastore composite = new CompositeDatastore().addSink(store);
+        Logger logger = Logger.getInstance("u", "ordered-composite-test", composite, DispatchMode.ORDERED);
+
+        logger.addLog(new Log("a", Severity.LOW));
+        CompletableFuture<Void> handle = logger.appendLog();
+
+        // The composite queued it right away, the sink hasn't written it
+        Thread.sleep(100);
+        assertFalse(handle.isDone());
+
+        store.gate.countDown();
+        handle.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("a"), store.written);
+    }
+
+    // Sends asynchronously like the network store; the blocking call gives up at once
+    private static class AsyncStore implements Datastore {
+        final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        final List<CompletableFuture<Void>> pending = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void addLog(Log log) {
+        }
+
+        @Override
+        public void appendLog(Collection<Log> logCollection) throws TimeoutException {
+            appendLogAsync(logCollection);
+            throw new TimeoutException("Still in flight");
+        }
+
+        @Override
+        public CompletableFuture<Void> appendLogAsync(Collection<Log> logCollection) {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            for (Log log : logCollection) {
+                sent.add(log.getData());
+            }
+            pending.add(done);
+            return done;
+        }
+
+        @Override
+        public void deleteLog() {
+        }
+    }
+
+    @Test
+    public void timedOutBatchHoldsBackTheNextOneOnItsLane() throws Exception {
+        AsyncStore store = new AsyncStore();
+        Logger logger = Logger.getInstance("u", "ordered-timeout-test", store, DispatchMode.ORDERED);
+
+        logger.addLog(new Log("a", Severity.LOW));
+        CompletableFuture<Void> first = logger.appendLog();
+        logger.addLog(new Log("b", Severity.LOW));
+        CompletableFuture<Void> second = logger.appendLog();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (store.pending.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(100);
+        assertEquals(List.of("a"), store.sent);
+
+        store.pending.get(0).completeExceptionally(new TimeoutException("Request timed out"));
+        ExecutionException failed = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertTrue(failed.getCause() instanceof TimeoutException);
+
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (store.pending.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(List.of("a", "b"), store.sent);
+        assertFalse(second.isDone());
+        store.pending.get(1).complete(null);
+        second.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void logsOverTheInFlightLimitAreDeferredNotDropped() throws Exception {
+        GatedStore store = new GatedStore();
+        Logger logger = Logger.getInstance("u", "deferred-flush-test", store);
+        logger.setInFlightLimits(1, Long.MAX_VALUE);
+
+        logger.addLog(new Log("a", Severity.LOW));
+        CompletableFuture<Void> first = logger.appendLog();
+
+        logger.addLog(new Log("b", Severity.LOW));
+        CompletableFuture<Void> second = logger.appendLog();
+        logger.addLog(new Log("c", Severity.LOW));
+        CompletableFuture<Void> third = logger.appendLog();
+
+        // Both later calls wait for the same batch, which still holds b and c
+        assertSame(second, third);
+        assertFalse(second.isDone());
+        assertEquals(2, logger.getPendingRecords());
+        assertEquals(2, logger.getDeferredFlushes());
+
+        // Nothing else calls appendLog, the first batch finishing ships the deferred one
+        store.gate.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("a", "b", "c"), store.written);
+    }
+
+    @Test
+    public void slowSinkDoesNotHoldBackTheOthers() throws Exception {
+        GatedStore blocked = new GatedStore();
+        GatedStore fast = new GatedStore();
+        fast.gate.countDown();
+        CompositeDatastore composite = new CompositeDatastore().addSink(fast).addSink(blocked);
+        Logger logger = Logger.getInstance("u", "slow-sink-test", composite);
+
+        // Well past the 64 batches the in-flight limit allows
+        for (int i = 0; i < 100; i++) {
+            logger.addLog(new Log("m" + i, Severity.LOW));
+            logger.appendLog();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (fast.written.size() < 100 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(100, fast.written.size());
+        assertEquals(0, logger.getPendingRecords());
+        blocked.gate.countDown();
+    }
+
+    @Test
+    public void shutdownShipsLogsTheLimitDeferred() {
+        GatedStore store = new GatedStore();
+        Logger logger = Logger.getInstance("u", "deferred-shutdown-test", store);
+        logger.setInFlightLimits(1, Long.MAX_VALUE);
+
+        logger.addLog(new Log("a", Severity.LOW));
+        logger.appendLog();
+        logger.addLog(new Log("b", Severity.LOW));
+        CompletableFuture<Void> deferred = logger.appendLog();
+
+        store.gate.countDown();
+        Logger.resetInstance();
+
+        assertTrue(deferred.isDone() && !deferred.isCompletedExceptionally());
+        assertEquals(List.of("a", "b"), store.written);
+    }
+}
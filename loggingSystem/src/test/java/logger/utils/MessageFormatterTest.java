@@ -0,0 +1,69 @@
+package logger.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import logger.enums.Severity;
+import logger.pojo.Log;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MessageFormatterTest {
+
+    @Test
+    public void placeholdersAreFilledLeftToRight() {
+        assertEquals("a=1 b=two", MessageFormatter.format("a={} b={}", new Object[]{1, "two"}));
+        assertEquals("null here", MessageFormatter.format("{} here", new Object[]{null}));
+        assertEquals("no args {}", MessageFormatter.format("no args {}", new Object[0]));
+        assertNull(MessageFormatter.format(null, new Object[]{1}));
+    }
+
+    @Test
+    public void escapedPlaceholdersStayLiteral() {
+        assertEquals("{} is 5", MessageFormatter.format("\\{} is {}", new Object[]{5}));
+    }
+
+    @Test
+    public void missingArgsLeavePlaceholdersAndExtraArgsAreIgnored() {
+        assertEquals("1 and {}", MessageFormatter.format("{} and {}", new Object[]{1}));
+        assertEquals("only 1", MessageFormatter.format("only {}", new Object[]{1, 2, 3}));
+    }
+
+    @Test
+    public void aTrailingThrowableWithoutPlaceholderIsLeftOut() {
+        IllegalStateException failure = new IllegalStateException("boom");
+
+        Object[] args = {42, failure};
+        assertEquals("order 42 failed", MessageFormatter.format("order {} failed", args));
+        assertSame(failure, MessageFormatter.trailingThrowable("order {} failed", args));
+
+        // Used by a placeholder, it is just another arg
+        assertEquals("failed: " + failure, MessageFormatter.format("failed: {}", new Object[]{failure}));
+        assertNull(MessageFormatter.trailingThrowable("failed: {}", new Object[]{failure}));
+        assertNull(MessageFormatter.trailingThrowable("\\{} {}", new Object[]{1}));
+    }
+
+    @Test
+    public void snapshotKeepsImmutableArgsAndStringifiesTheRest() {
+        Object[] immutable = {"s", 1, 2L, true, Severity.HIGH, null};
+        assertSame(immutable, MessageFormatter.snapshot(immutable));
+
+        List<String> items = new ArrayList<>(List.of("a"));
+        Object[] mutable = {"s", items};
+        Object[] snapshot = MessageFormatter.snapshot(mutable);
+        assertEquals("[a]", snapshot[1]);
+        assertSame(items, mutable[1]);
+    }
+
+    @Test
+    public void argsChangedAfterTheCallDontChangeTheMessage() {
+        List<String> items = new ArrayList<>(List.of("a"));
+        Log log = new Log(Severity.LOW, "items {}", new Object[]{items});
+        items.add("b");
+
+        assertEquals("items [a]", log.getData());
+    }
+}
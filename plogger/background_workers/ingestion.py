@@ -58,7 +58,8 @@ def process_logs_task(log_batch: List[LogIngestSchema]):
 
                 
                 trace_snippet = (log_data.stackTrace or "")[:500]
-                text_to_embed = f"[{log_data.severity}] {log_data.project_name}: {log_data.data} {trace_snippet}"
+                repeats = f" (repeated {log_data.repeatCount} times)" if log_data.repeatCount > 1 else ""
+                text_to_embed = f"[{log_data.severity}] {log_data.project_name}: {log_data.data}{repeats} {trace_snippet}"
 
               
                 vector = model.encode(text_to_embed).tolist()
@@ -73,6 +74,7 @@ def process_logs_task(log_batch: List[LogIngestSchema]):
                     thread_name=log_data.threadName,
                     stack_trace=log_data.stackTrace,
                     project_name=log_data.project_name,
+                    raw_data=log_data.model_dump(),
                     embedding=vector
                 )
                 new_log_entries.append(log_entry)
@@ -15,6 +15,11 @@ class LogIngestSchema(SQLModel):
     stackTrace: Optional[str] = None
     project_name: str
     user_Id: str 
+    samplingRate: float = 1.0  # kept with this probability by the client sampler
+    mdc: Optional[Dict[str, str]] = None  # diagnostic context from SLF4J/Logback
+    repeatCount: int = 1  # identical logs collapsed into this one by the client
+    firstSeen: Optional[str] = None
+    lastSeen: Optional[str] = None
 
 # 2. The Database Model: User
 class User(SQLModel, table=True):